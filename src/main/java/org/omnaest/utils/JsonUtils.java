@@ -16,24 +16,82 @@
 
 package org.omnaest.utils;
 
+import java.io.CharConversionException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
+import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import org.omnaest.utils.json.ByteBufferChainOutputStream;
+import org.omnaest.utils.json.JsonAggregation;
+import org.omnaest.utils.json.JsonArrayCheckpoint;
+import org.omnaest.utils.json.JsonArrayCursor;
+import org.omnaest.utils.json.JsonArrayElement;
+import org.omnaest.utils.json.JsonArrayHashIndex;
+import org.omnaest.utils.json.JsonArrayOffsetIndex;
+import org.omnaest.utils.json.JsonArraySplitter;
+import org.omnaest.utils.json.JsonBeanBinder;
+import org.omnaest.utils.json.JsonColumnarTable;
+import org.omnaest.utils.json.JsonCompactTree;
+import org.omnaest.utils.json.JsonCompression;
+import org.omnaest.utils.json.JsonHashJoin;
+import org.omnaest.utils.json.JsonKeyDictionary;
+import org.omnaest.utils.json.JsonOutputFormat;
+import org.omnaest.utils.json.JsonPartitionedWriter;
+import org.omnaest.utils.json.JsonPointerExtractor;
+import org.omnaest.utils.json.JsonRollingWriter;
+import org.omnaest.utils.json.JsonStructuralScanner;
+import org.omnaest.utils.json.JsonTapeDocument;
+
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonGenerator.Feature;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -48,7 +106,10 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -93,6 +154,13 @@ public class JsonUtils
      */
     private static final ObjectMapper SHARED_OBJECT_MAPPER = new ObjectMapper();
 
+    /**
+     * Binds {@link Map}s to plain beans and back for {@link #toObjectWithType(Object, Class)} and {@link #toMap(Object)}
+     * without the {@code TokenBuffer} round trip of {@link ObjectMapper#convertValue(Object, Class)}, based on the
+     * bean introspection of the {@link #SHARED_OBJECT_MAPPER} and falling back to it for anything but plain beans.
+     */
+    private static final JsonBeanBinder BEAN_BINDER = new JsonBeanBinder(SHARED_OBJECT_MAPPER);
+
     /**
      * @see #serialize(Object)
      * @param object
@@ -104,6 +172,62 @@ public class JsonUtils
                            .apply(object);
     }
 
+    /**
+     * Removes all whitespace outside of strings from the given UTF-8 encoded JSON, working on the raw bytes rather than
+     * on parsed tokens, with the {@link JsonStructuralScanner} jumping from one quote or whitespace byte to the next.
+     * <p>
+     * Note: the structure of the JSON is not validated beyond the termination of its strings.
+     *
+     * @param data
+     * @return
+     * @throws IllegalArgumentException
+     *             if a string is not terminated
+     */
+    public static byte[] minify(byte[] data)
+    {
+        if (data == null)
+        {
+            return null;
+        }
+
+        JsonStructuralScanner scanner = JsonStructuralScanner.getDefault();
+        byte[] result = new byte[data.length];
+        int length = 0;
+        int index = 0;
+        while (index < data.length)
+        {
+            int next = scanner.indexOf(data, index, data.length, JsonStructuralScanner.CLASS_QUOTE | JsonStructuralScanner.CLASS_WHITESPACE);
+
+            // a whitespace byte is left out, a string is copied as a whole
+            int copyEnd = next;
+            int resumeIndex = next + 1;
+            if (next < data.length && data[next] == '"')
+            {
+                copyEnd = scanner.indexOfStringEnd(data, next, data.length);
+                if (copyEnd < 0)
+                {
+                    throw new IllegalArgumentException("Unterminated string at byte offset " + next);
+                }
+                resumeIndex = copyEnd;
+            }
+
+            System.arraycopy(data, index, result, length, copyEnd - index);
+            length += copyEnd - index;
+            index = resumeIndex;
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    /**
+     * @see #minify(byte[])
+     * @param json
+     * @return
+     */
+    public static String minify(String json)
+    {
+        return json != null ? new String(minify(json.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8) : null;
+    }
+
     /**
      * Serializes the given {@link Object} without pretty formatting.
      * 
@@ -171,6 +295,178 @@ public class JsonUtils
         }
     }
 
+    /**
+     * Similar to {@link #serialize(Object, Writer)} but encodes the UTF-8 JSON directly into the given
+     * {@link ByteBuffer}, starting at its position, and continues with further {@link ByteBuffer}s from the given
+     * {@link Supplier}, e.g. direct ones from a pool, once it is full. So the output can be handed to a channel
+     * without an intermediate heap array.
+     *
+     * @see ByteBufferChainOutputStream
+     * @param object
+     * @param buffer
+     *            the first {@link ByteBuffer}, or null to start with one from the supplier
+     * @param bufferSupplier
+     *            null, if the output has to fit into the given {@link ByteBuffer}
+     * @return the {@link ByteBuffer}s written to, flipped, so they are ready to be written to a channel
+     */
+    public static List<ByteBuffer> serialize(Object object, ByteBuffer buffer, Supplier<ByteBuffer> bufferSupplier)
+    {
+        ByteBufferChainOutputStream outputStream = new ByteBufferChainOutputStream(buffer, bufferSupplier);
+        writeValue(SHARED_OBJECT_MAPPER.writer(), object, outputStream);
+        return outputStream.getBuffers();
+    }
+
+    /**
+     * Similar to {@link #serialize(Object, Writer)} but encodes the UTF-8 JSON directly into the given
+     * {@link WritableByteChannel}, in chunks of the internal buffer size of the {@link JsonGenerator}.
+     * <p>
+     * Note: the {@link WritableByteChannel} is <b>not</b> closed, and has to be in blocking mode, see
+     * {@link Channels#newOutputStream(WritableByteChannel)}.
+     *
+     * @param object
+     * @param channel
+     */
+    public static void serialize(Object object, WritableByteChannel channel)
+    {
+        writeValue(SHARED_OBJECT_MAPPER.writer(), object, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Similar to {@link #serialize(Object, WritableByteChannel)} but writes the UTF-8 JSON into the given
+     * {@link OutputStream} compressed by the given {@link JsonCompression}.
+     * <p>
+     * Note: the compression is finished, but the {@link OutputStream} is <b>not</b> closed.
+     *
+     * @see #readFromInputStream(InputStream, Class)
+     * @param object
+     * @param outputStream
+     * @param compression
+     */
+    public static void serialize(Object object, OutputStream outputStream, JsonCompression compression)
+    {
+        try (OutputStream compressedOutputStream = compression.compress(new NonClosingOutputStream(outputStream)))
+        {
+            writeValue(SHARED_OBJECT_MAPPER.writer(), object, compressedOutputStream);
+        }
+        catch (IOException e)
+        {
+            LOGGER.debug("Exception compressing json", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeValue(ObjectWriter objectWriter, Object object, OutputStream outputStream)
+    {
+        try
+        {
+            objectWriter.without(Feature.AUTO_CLOSE_TARGET)
+                        .writeValue(outputStream, object);
+        }
+        catch (Exception e)
+        {
+            LOGGER.debug("Exception serializing object into json: {}", object, e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static enum ReformatMode
+    {
+        PRETTY, COMPACT, VALIDATE_ONLY
+    }
+
+    /**
+     * Reformats the JSON from the given {@link Reader} into the given {@link Writer}, token by token and without any
+     * data binding, so it runs in constant memory regardless of the size of the content. Multiple root level values
+     * are supported. Numbers are written in their original textual representation, so no precision is lost.
+     * <p>
+     * Note: neither the {@link Reader} nor the {@link Writer} is closed; the {@link Writer} is flushed.
+     *
+     * @param reader
+     * @param writer
+     *            ignored for {@link ReformatMode#VALIDATE_ONLY}, and may be null then
+     * @param mode
+     * @throws JSONFormatException
+     *             with the location of the first error, if the content is no valid JSON. Any output written up to that
+     *             error is left as it is.
+     */
+    public static void reformat(Reader reader, Writer writer, ReformatMode mode)
+    {
+        reformat(objectMapper -> objectMapper.getFactory()
+                                             .createParser(reader),
+                 objectWriter -> objectWriter.createGenerator(writer), mode);
+    }
+
+    /**
+     * Similar to {@link #reformat(Reader, Writer, ReformatMode)} for UTF-8 encoded streams
+     *
+     * @param inputStream
+     * @param outputStream
+     * @param mode
+     */
+    public static void reformat(InputStream inputStream, OutputStream outputStream, ReformatMode mode)
+    {
+        reformat(objectMapper -> objectMapper.getFactory()
+                                             .createParser(inputStream),
+                 objectWriter -> objectWriter.createGenerator(outputStream), mode);
+    }
+
+    private static interface JsonGeneratorFactory
+    {
+        public JsonGenerator apply(ObjectWriter objectWriter) throws IOException;
+    }
+
+    private static void reformat(JsonReadOperation<JsonParser> parserFactory, JsonGeneratorFactory generatorFactory, ReformatMode mode)
+    {
+        ObjectWriter objectWriter = mode == ReformatMode.PRETTY ? SHARED_OBJECT_MAPPER.writerWithDefaultPrettyPrinter()
+                : SHARED_OBJECT_MAPPER.writer();
+        try (JsonParser jsonParser = parserFactory.apply(SHARED_OBJECT_MAPPER)
+                                                  .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+                JsonGenerator jsonGenerator = mode == ReformatMode.VALIDATE_ONLY ? null
+                        : generatorFactory.apply(objectWriter)
+                                          .disable(Feature.AUTO_CLOSE_TARGET)
+                                          .disable(Feature.AUTO_CLOSE_JSON_CONTENT))
+        {
+            try
+            {
+                JsonToken token;
+                while ((token = jsonParser.nextToken()) != null)
+                {
+                    if (jsonGenerator == null)
+                    {
+                        continue;
+                    }
+                    if (token.isNumeric())
+                    {
+                        // copyCurrentEvent would go through double and lose digits of e.g. 0.10000000000000000001
+                        jsonGenerator.writeNumber(jsonParser.getText());
+                    }
+                    else
+                    {
+                        jsonGenerator.copyCurrentEvent(jsonParser);
+                    }
+                }
+            }
+            catch (CharConversionException e)
+            {
+                // raised by the decoding of the input, e.g. of invalid UTF-32, which is a format error just as well
+                throw new JsonParseException(jsonParser, e.getMessage(), e);
+            }
+            if (jsonGenerator != null)
+            {
+                jsonGenerator.flush();
+            }
+        }
+        catch (JsonParseException e)
+        {
+            throw new JSONFormatException(e);
+        }
+        catch (Exception e)
+        {
+            LOGGER.debug("Exception reformatting json", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static void serializeArray(Stream<? extends Object> stream, Writer writer)
     {
         boolean pretty = false;
@@ -230,6 +526,175 @@ public class JsonUtils
         }
     }
 
+    /**
+     * Similar to {@link #serializeArray(Stream, Writer)} but writes the UTF-8 JSON array into the given
+     * {@link OutputStream} compressed by the given {@link JsonCompression}, e.g.
+     * {@link JsonCompression#PARALLEL_GZIP} to compress on all cores while the elements are serialized.
+     * <p>
+     * Note: the compression is finished, but the {@link OutputStream} is <b>not</b> closed.
+     *
+     * @see #readArrayFromInputStream(InputStream, Class)
+     * @param stream
+     * @param outputStream
+     * @param compression
+     */
+    public static void serializeArray(Stream<? extends Object> stream, OutputStream outputStream, JsonCompression compression)
+    {
+        // the compression would otherwise be flushed after every element
+        ObjectWriter objectWriter = SHARED_OBJECT_MAPPER.writer()
+                                                        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (OutputStream compressedOutputStream = compression.compress(new NonClosingOutputStream(outputStream));
+                JsonGenerator jsonGenerator = objectWriter.createGenerator(compressedOutputStream, JsonEncoding.UTF8)
+                                                          .disable(Feature.AUTO_CLOSE_TARGET))
+        {
+            jsonGenerator.writeStartArray();
+
+            Optional.ofNullable(stream)
+                    .orElse(Stream.empty())
+                    .forEach(object ->
+                    {
+                        try
+                        {
+                            objectWriter.writeValue(jsonGenerator, object);
+                        }
+                        catch (Exception e)
+                        {
+                            LOGGER.debug("Exception serializing array object into json " + object, e);
+                            throw new IllegalStateException(e);
+                        }
+                    });
+
+            jsonGenerator.writeEndArray();
+        }
+        catch (IOException e)
+        {
+            LOGGER.debug("Exception compressing json array", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * {@link OutputStream} flushing instead of closing the underlying one, so that wrapping streams can be closed to
+     * finish them
+     *
+     * @author omnaest
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream
+    {
+        private NonClosingOutputStream(OutputStream outputStream)
+        {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException
+        {
+            this.out.write(data, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Writes the given {@link IntStream} as JSON array into the given {@link Writer}, without boxing the values.
+     * <p>
+     * Note: the {@link Writer} is flushed but <b>not</b> closed, like with {@link #serializeArray(Stream, Writer)}.
+     *
+     * @param stream
+     * @param writer
+     */
+    public static void serializeIntArray(IntStream stream, Writer writer)
+    {
+        serializeNumberArray(writer, jsonGenerator ->
+        {
+            PrimitiveIterator.OfInt iterator = Optional.ofNullable(stream)
+                                                       .orElse(IntStream.empty())
+                                                       .iterator();
+            while (iterator.hasNext())
+            {
+                jsonGenerator.writeNumber(iterator.nextInt());
+            }
+        });
+    }
+
+    /**
+     * Similar to {@link #serializeIntArray(IntStream, Writer)} but for long values
+     *
+     * @param stream
+     * @param writer
+     */
+    public static void serializeLongArray(LongStream stream, Writer writer)
+    {
+        serializeNumberArray(writer, jsonGenerator ->
+        {
+            PrimitiveIterator.OfLong iterator = Optional.ofNullable(stream)
+                                                        .orElse(LongStream.empty())
+                                                        .iterator();
+            while (iterator.hasNext())
+            {
+                jsonGenerator.writeNumber(iterator.nextLong());
+            }
+        });
+    }
+
+    /**
+     * Similar to {@link #serializeIntArray(IntStream, Writer)} but for double values
+     *
+     * @param stream
+     * @param writer
+     */
+    public static void serializeDoubleArray(DoubleStream stream, Writer writer)
+    {
+        serializeNumberArray(writer, jsonGenerator ->
+        {
+            PrimitiveIterator.OfDouble iterator = Optional.ofNullable(stream)
+                                                          .orElse(DoubleStream.empty())
+                                                          .iterator();
+            while (iterator.hasNext())
+            {
+                jsonGenerator.writeNumber(iterator.nextDouble());
+            }
+        });
+    }
+
+    private static interface JsonWriteOperation
+    {
+        public void apply(JsonGenerator jsonGenerator) throws IOException;
+    }
+
+    /**
+     * Writes a JSON array whose elements are written by the given operation, which iterates the primitive values
+     * itself instead of using {@code forEach}, since a lambda around the throwing
+     * {@link JsonGenerator#writeNumber(int)} would capture and allocate per element
+     *
+     * @param writer
+     * @param elementsOperation
+     */
+    private static void serializeNumberArray(Writer writer, JsonWriteOperation elementsOperation)
+    {
+        try
+        {
+            try (JsonGenerator jsonGenerator = SHARED_OBJECT_MAPPER.getFactory()
+                                                                   .createGenerator(writer)
+                                                                   .disable(Feature.AUTO_CLOSE_TARGET))
+            {
+                jsonGenerator.writeStartArray();
+                elementsOperation.apply(jsonGenerator);
+                jsonGenerator.writeEndArray();
+            }
+            writer.flush();
+        }
+        catch (Exception e)
+        {
+            LOGGER.debug("Exception serializing number array into json", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static class JSONSerializationException extends RuntimeException
     {
         private static final long serialVersionUID = 5857551929861868563L;
@@ -250,6 +715,66 @@ public class JsonUtils
             super(cause);
         }
 
+        public JSONDeserializationException(String message, Throwable cause)
+        {
+            super(message, cause);
+        }
+
+    }
+
+    /**
+     * {@link JSONDeserializationException} for content that is no valid JSON, which carries the location of the first
+     * error
+     *
+     * @author omnaest
+     */
+    public static class JSONFormatException extends JSONDeserializationException
+    {
+        private static final long serialVersionUID = -3178430552951707231L;
+
+        private final int  lineNumber;
+        private final int  columnNumber;
+        private final long offset;
+
+        public JSONFormatException(JsonParseException cause)
+        {
+            super(cause.getOriginalMessage(), cause);
+            JsonLocation location = Optional.ofNullable(cause.getLocation())
+                                            .orElse(JsonLocation.NA);
+            this.lineNumber = location.getLineNr();
+            this.columnNumber = location.getColumnNr();
+            this.offset = location.getCharOffset() >= 0 ? location.getCharOffset() : location.getByteOffset();
+        }
+
+        /**
+         * @return the 1-based line number, or -1 if unknown
+         */
+        public int getLineNumber()
+        {
+            return this.lineNumber;
+        }
+
+        /**
+         * @return the 1-based column number, or -1 if unknown
+         */
+        public int getColumnNumber()
+        {
+            return this.columnNumber;
+        }
+
+        /**
+         * @return the 0-based char offset for character input, the byte offset for byte input, or -1 if unknown
+         */
+        public long getOffset()
+        {
+            return this.offset;
+        }
+
+        @Override
+        public String getMessage()
+        {
+            return super.getMessage() + " at line " + this.lineNumber + ", column " + this.columnNumber;
+        }
     }
 
     /**
@@ -338,42 +863,1294 @@ public class JsonUtils
     }
 
     /**
-     * Reads a JSON array from the given {@link Reader} as a lazy {@link Stream}, pulling one element at a time
-     * so that arrays larger than the heap can be processed.
-     * <p>
-     * Note: the returned {@link Stream} owns the underlying {@link JsonParser} and {@link Reader} and has to be
-     * closed by the caller, ideally via try-with-resources, since {@link Stream} is {@link AutoCloseable}. If
-     * this method throws instead of returning a {@link Stream}, it has already released the parser itself.
+     * Similar to {@link #readFromReader(Reader, Class)} for UTF-8 JSON from the given {@link InputStream}, which is
+     * decompressed transparently, if it is gzipped, see {@link JsonCompression#decompress(InputStream)}
      *
-     * @param reader
+     * @param inputStream
      * @param type
      * @return
      */
-    public static <T> Stream<T> readArrayFromReader(Reader reader, Class<T> type)
+    public static <T> T readFromInputStream(InputStream inputStream, Class<T> type)
     {
-        if (reader == null)
-        {
-            return Stream.empty();
-        }
+        return readJson(objectMapper -> inputStream != null ? objectMapper.readValue(JsonCompression.decompress(inputStream), type) : null);
+    }
+
+    /**
+     * Similar to {@link #readArrayFromReader(Reader, Class)} for a UTF-8 JSON array from the given {@link InputStream},
+     * which is decompressed transparently, if it is gzipped, see {@link JsonCompression#decompress(InputStream)}.
+     * <p>
+     * Note: the returned {@link Stream} owns the {@link InputStream} and has to be closed by the caller.
+     *
+     * @param inputStream
+     * @param type
+     * @return
+     */
+    public static <T> Stream<T> readArrayFromInputStream(InputStream inputStream, Class<T> type)
+    {
+        if (inputStream == null)
+        {
+            return Stream.empty();
+        }
+
+        // the byte based parser decodes the UTF-8 itself, which is faster than going through a Reader
+        return readContainer(objectMapper ->
+        {
+            InputStream decompressedInputStream;
+            try
+            {
+                decompressedInputStream = JsonCompression.decompress(inputStream);
+            }
+            catch (IOException e)
+            {
+                try
+                {
+                    inputStream.close();
+                }
+                catch (IOException suppressed)
+                {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            return objectMapper.getFactory()
+                               .createParser(decompressedInputStream);
+        }, JsonToken.START_ARRAY, newArrayStreamFactory(type));
+    }
+
+    private static final int NUMBER_ARRAY_CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+
+    /**
+     * Reads a JSON array from the given {@link Reader} as a lazy {@link Stream}, pulling one element at a time
+     * so that arrays larger than the heap can be processed.
+     * <p>
+     * Note: the returned {@link Stream} owns the underlying {@link JsonParser} and {@link Reader} and has to be
+     * closed by the caller, ideally via try-with-resources, since {@link Stream} is {@link AutoCloseable}. If
+     * this method throws instead of returning a {@link Stream}, it has already released the parser itself.
+     *
+     * @param reader
+     * @param type
+     * @return
+     */
+    public static <T> Stream<T> readArrayFromReader(Reader reader, Class<T> type)
+    {
+        return readArrayFromReader(reader, Stream.empty(), newArrayStreamFactory(type));
+    }
+
+    private static <T> BiFunction<ObjectMapper, JsonParser, Stream<T>> newArrayStreamFactory(Class<T> type)
+    {
+        return (objectMapper, jsonParser) ->
+        {
+            Iterable<T> iterable = () -> new JsonArrayIterator<>(jsonParser, objectMapper, type);
+            return StreamSupport.stream(iterable.spliterator(), false);
+        };
+    }
+
+    /**
+     * Similar to {@link #readArrayFromReader(Reader, Class)} for a JSON object on root level, like
+     * {@code {"id1":{...},"id2":{...}}}, whose fields are read as lazy {@link Stream} of entries, binding one value at
+     * a time. Duplicate field names result in one entry each.
+     * <p>
+     * Note: the returned {@link Stream} has to be closed by the caller, like the one of
+     * {@link #readArrayFromReader(Reader, Class)}.
+     *
+     * @param reader
+     * @param type
+     *            the type of the field values
+     * @return
+     */
+    public static <V> Stream<Map.Entry<String, V>> readObjectEntriesFromReader(Reader reader, Class<V> type)
+    {
+        return readContainerFromReader(reader, JsonToken.START_OBJECT, Stream.empty(), (objectMapper, jsonParser) ->
+        {
+            Iterable<Map.Entry<String, V>> iterable = () -> new JsonObjectEntryIterator<>(jsonParser, objectMapper, type);
+            return StreamSupport.stream(iterable.spliterator(), false);
+        });
+    }
+
+    /**
+     * Similar to {@link #readArrayFromReader(Reader, Class)} for a JSON array located at the given JSON pointer within
+     * a wrapper document, like {@code /data/items} within {@code {"meta":{...},"data":{"items":[...]}}}. Everything
+     * outside of the pointer path is skipped without being bound.
+     * <p>
+     * Note: the returned {@link Stream} has to be closed by the caller. It is empty, if there is no value or null at
+     * the pointer.
+     *
+     * @see #readArrayAtPointer(Reader, String, Class, BiConsumer)
+     * @param reader
+     * @param pointer
+     *            a JSON pointer like {@code /data/items}, where the empty pointer denotes the root
+     * @param type
+     * @return
+     * @throws IllegalStateException
+     *             if the value at the pointer is no JSON array
+     */
+    public static <T> Stream<T> readArrayAtPointer(Reader reader, String pointer, Class<T> type)
+    {
+        return readArrayAtPointer(reader, pointer, type, null);
+    }
+
+    /**
+     * Similar to {@link #readArrayAtPointer(Reader, String, Class)}, but instead of being skipped, every value next to
+     * the pointer path - like {@code /meta} and {@code /data/total} for the pointer {@code /data/items} - is read as
+     * {@link JsonNode} and passed to the given {@link BiConsumer} together with its own pointer.
+     * <p>
+     * Values in front of the array are passed before this method returns, values behind it once the returned
+     * {@link Stream} has been consumed up to the end of the array. Closing the {@link Stream} earlier leaves the latter
+     * unread.
+     *
+     * @param reader
+     * @param pointer
+     * @param type
+     * @param siblingConsumer
+     *            null to skip the siblings
+     * @return
+     */
+    public static <T> Stream<T> readArrayAtPointer(Reader reader, String pointer, Class<T> type, BiConsumer<JsonPointer, JsonNode> siblingConsumer)
+    {
+        JsonPointer jsonPointer = JsonPointer.compile(pointer);
+        return readStreamFromReader(reader, Stream.empty(), (objectMapper, jsonParser) ->
+        {
+            JsonPointerNavigator navigator = new JsonPointerNavigator(jsonParser, objectMapper, siblingConsumer);
+            JsonToken token = navigator.moveTo(jsonPointer);
+            if (token == null || token == JsonToken.VALUE_NULL)
+            {
+                navigator.skipToEnd();
+                return Stream.empty();
+            }
+            else if (token != JsonToken.START_ARRAY)
+            {
+                throw new IllegalStateException("Value at JSON pointer " + jsonPointer + " is no JSON array but " + token);
+            }
+
+            Iterable<T> iterable = () -> new JsonArrayIterator<>(jsonParser, objectMapper, type, () ->
+            {
+                try
+                {
+                    navigator.skipToEnd();
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+            return StreamSupport.stream(iterable.spliterator(), false);
+        });
+    }
+
+    /**
+     * Moves a {@link JsonParser} along a {@link JsonPointer}, passing every value beside the path either to a sibling
+     * consumer, or skipping it with {@link JsonParser#skipChildren()}
+     *
+     * @author omnaest
+     */
+    private static class JsonPointerNavigator
+    {
+        private final JsonParser                        jsonParser;
+        private final ObjectMapper                      objectMapper;
+        private final BiConsumer<JsonPointer, JsonNode> siblingConsumer;
+
+        private JsonPointerNavigator(JsonParser jsonParser, ObjectMapper objectMapper, BiConsumer<JsonPointer, JsonNode> siblingConsumer)
+        {
+            super();
+            this.jsonParser = jsonParser;
+            this.objectMapper = objectMapper;
+            this.siblingConsumer = siblingConsumer;
+        }
+
+        /**
+         * Moves the parser from the start of the content onto the first token of the value at the given pointer
+         *
+         * @param pointer
+         * @return null, if there is no such value
+         * @throws IOException
+         */
+        private JsonToken moveTo(JsonPointer pointer) throws IOException
+        {
+            JsonToken token = this.jsonParser.nextToken();
+            JsonPointer remaining = pointer;
+            while (token != null && !remaining.matches())
+            {
+                token = this.moveToChild(token, remaining);
+                remaining = remaining.tail();
+            }
+            return token;
+        }
+
+        private JsonToken moveToChild(JsonToken token, JsonPointer pointer) throws IOException
+        {
+            if (token == JsonToken.START_OBJECT)
+            {
+                String matchingProperty = pointer.getMatchingProperty();
+                while (this.jsonParser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String fieldName = this.jsonParser.currentName();
+                    JsonToken valueToken = this.jsonParser.nextToken();
+                    if (fieldName.equals(matchingProperty))
+                    {
+                        return valueToken;
+                    }
+                    this.passSibling();
+                }
+            }
+            else if (token == JsonToken.START_ARRAY)
+            {
+                int matchingIndex = pointer.getMatchingIndex();
+                int index = 0;
+                JsonToken elementToken;
+                while ((elementToken = this.jsonParser.nextToken()) != JsonToken.END_ARRAY && elementToken != null)
+                {
+                    if (index++ == matchingIndex)
+                    {
+                        return elementToken;
+                    }
+                    this.passSibling();
+                }
+            }
+            else
+            {
+                // a scalar where the pointer expects a container
+                this.passSibling();
+            }
+            return null;
+        }
+
+        /**
+         * Reads all remaining content, passing every value that is not yet consumed
+         *
+         * @throws IOException
+         */
+        private void skipToEnd() throws IOException
+        {
+            JsonToken token;
+            while ((token = this.jsonParser.nextToken()) != null)
+            {
+                if (token != JsonToken.FIELD_NAME && !token.isStructEnd())
+                {
+                    this.passSibling();
+                }
+            }
+        }
+
+        private void passSibling() throws IOException
+        {
+            if (this.siblingConsumer == null)
+            {
+                this.jsonParser.skipChildren();
+                return;
+            }
+
+            JsonPointer pointer = this.jsonParser.getParsingContext()
+                                                 .pathAsPointer();
+            JsonNode node = this.objectMapper.readTree(this.jsonParser);
+            this.siblingConsumer.accept(pointer, node != null ? node : NullNode.getInstance());
+        }
+    }
+
+    /**
+     * Similar to {@link #readArrayFromReader(Reader, Class)} for a UTF-8 encoded JSON array file
+     * <p>
+     * Note: the returned {@link Stream} has to be closed by the caller.
+     *
+     * @see #readArrayFromFile(Path, JsonArrayOffsetIndex, long, Class)
+     * @param arrayFile
+     * @param type
+     * @return
+     */
+    public static <T> Stream<T> readArrayFromFile(Path arrayFile, Class<T> type)
+    {
+        long fromIndex = 0;
+        return readArrayFromFile(arrayFile, 0, 0, fromIndex, cursor -> cursor.read(type));
+    }
+
+    /**
+     * Similar to {@link #readArrayFromFile(Path, Class)} but starts at the element with the given index, which is
+     * reached by seeking to the closest offset the given {@link JsonArrayOffsetIndex} holds, and skipping the elements
+     * from there on without binding them. The result is the same as skipping the elements of the whole array.
+     *
+     * @see #buildArrayOffsetIndex(Path, Path, int)
+     * @param arrayFile
+     * @param index
+     *            of the given array file, which is rejected, if the array file has changed since
+     * @param fromIndex
+     * @param type
+     * @return
+     */
+    public static <T> Stream<T> readArrayFromFile(Path arrayFile, JsonArrayOffsetIndex index, long fromIndex, Class<T> type)
+    {
+        readJson(objectMapper ->
+        {
+            index.validate(arrayFile);
+            return index;
+        });
+        long indexedElementIndex = index.getIndexedElementIndex(fromIndex);
+        return readArrayFromFile(arrayFile, index.getIndexedElementOffset(fromIndex), indexedElementIndex, fromIndex,
+                                 cursor -> cursor.read(type));
+    }
+
+    /**
+     * Similar to {@link #readArrayFromFile(Path, Class)} but starts at the given {@link JsonArrayCheckpoint} and
+     * returns every element together with the {@link JsonArrayCheckpoint} right behind it. So a long running job can
+     * persist the checkpoint of the last processed element, and resume from there after a failure by seeking directly
+     * to it, instead of reading the file from the start again.
+     * <p>
+     * Note: the returned {@link Stream} has to be closed by the caller.
+     *
+     * @param arrayFile
+     * @param checkpoint
+     *            {@link JsonArrayCheckpoint#start()} for the first element
+     * @param type
+     * @return
+     */
+    public static <T> Stream<JsonArrayElement<T>> readArrayFromFile(Path arrayFile, JsonArrayCheckpoint checkpoint, Class<T> type)
+    {
+        return readArrayFromFile(arrayFile, checkpoint.getOffset(), checkpoint.getIndex(), checkpoint.getIndex(), cursor ->
+        {
+            long index = cursor.getElementIndex();
+            T value = cursor.read(type);
+            return new JsonArrayElement<>(value, index, cursor.getCheckpoint());
+        });
+    }
+
+    /**
+     * Builds a {@link JsonArrayOffsetIndex} of the given JSON array file, holding the byte offset of every n-th
+     * element, and writes it into the given sidecar file
+     *
+     * @see #readArrayFromFile(Path, JsonArrayOffsetIndex, long, Class)
+     * @see #readArrayOffsetIndex(Path, Path)
+     * @param arrayFile
+     * @param indexFile
+     * @param interval
+     * @return
+     */
+    public static JsonArrayOffsetIndex buildArrayOffsetIndex(Path arrayFile, Path indexFile, int interval)
+    {
+        return readJson(objectMapper ->
+        {
+            JsonArrayOffsetIndex index = JsonArrayOffsetIndex.build(arrayFile, interval, objectMapper);
+            index.write(indexFile);
+            return index;
+        });
+    }
+
+    /**
+     * Reads the {@link JsonArrayOffsetIndex} written by {@link #buildArrayOffsetIndex(Path, Path, int)} for the given
+     * array file
+     *
+     * @param arrayFile
+     * @param indexFile
+     * @return
+     * @throws IllegalStateException
+     *             also if the array file has changed since the index has been built
+     */
+    public static JsonArrayOffsetIndex readArrayOffsetIndex(Path arrayFile, Path indexFile)
+    {
+        return readJson(objectMapper -> JsonArrayOffsetIndex.read(indexFile, arrayFile));
+    }
+
+    /**
+     * Builds a {@link JsonArrayHashIndex} of the given JSON array file of objects over the given top level key field,
+     * and writes it into the given index file
+     *
+     * @see #openArrayHashIndex(Path, Path)
+     * @param arrayFile
+     * @param indexFile
+     * @param keyField
+     * @return the number of indexed elements
+     */
+    public static long buildArrayHashIndex(Path arrayFile, Path indexFile, String keyField)
+    {
+        return readJson(objectMapper -> JsonArrayHashIndex.build(arrayFile, indexFile, keyField, objectMapper));
+    }
+
+    /**
+     * Opens a {@link JsonArrayHashIndex} written by {@link #buildArrayHashIndex(Path, Path, String)} for point lookups
+     * by key, which reads only the matching element from the array file
+     * <p>
+     * Note: the returned {@link JsonArrayHashIndex} has to be closed by the caller.
+     *
+     * @param arrayFile
+     * @param indexFile
+     * @return
+     * @throws IllegalStateException
+     *             also if the array file has changed since the index has been built
+     */
+    public static JsonArrayHashIndex openArrayHashIndex(Path arrayFile, Path indexFile)
+    {
+        return readJson(objectMapper -> JsonArrayHashIndex.open(arrayFile, indexFile, objectMapper));
+    }
+
+    /**
+     * Returns a {@link JsonHashJoin} of the given UTF-8 encoded JSON array files by the keys the given extractors
+     * return, which reads the build side into a hash table, spilling partitions to disk beyond a memory budget, and
+     * streams the probe side against it. The build side should be the smaller one.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * try (Stream&lt;Order&gt; orders = JsonUtils.joinArrays(orderFile, Order.class, Order::getCustomerId, customerFile, Customer.class, Customer::getId)
+     *                                        .withJoinType(JoinType.LEFT)
+     *                                        .join(Order::withCustomer))
+     * {
+     *     ...
+     * }
+     * </pre>
+     *
+     * @param probeFile
+     * @param probeType
+     * @param probeKeyExtractor
+     * @param buildFile
+     * @param buildType
+     * @param buildKeyExtractor
+     * @return
+     */
+    public static <P, B, K> JsonHashJoin<P, B, K> joinArrays(Path probeFile, Class<P> probeType, Function<? super P, ? extends K> probeKeyExtractor,
+                                                             Path buildFile, Class<B> buildType, Function<? super B, ? extends K> buildKeyExtractor)
+    {
+        return readJson(objectMapper -> new JsonHashJoin<>(objectMapper, probeFile, probeType, probeKeyExtractor, buildFile, buildType,
+                                                           buildKeyExtractor));
+    }
+
+    /**
+     * Splits the given UTF-8 encoded JSON array file into the given shard files, which are JSON arrays again, by copying
+     * the raw bytes of the elements without binding them. The shard of every element is selected by the given
+     * {@link JsonArraySplitter}, like {@link JsonArraySplitter#roundRobin()}, and the shards are written
+     * concurrently.
+     *
+     * @param arrayFile
+     * @param shardFiles
+     * @param splitter
+     * @return the number of elements written into each shard
+     */
+    public static long[] splitArray(Path arrayFile, List<Path> shardFiles, JsonArraySplitter splitter)
+    {
+        return readJson(objectMapper -> splitter.split(arrayFile, shardFiles, objectMapper));
+    }
+
+    /**
+     * Returns a new {@link JsonPartitionedWriter}, which writes every record into the file of the partition of its key,
+     * keeping a bounded number of files open at once
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * try (JsonPartitionedWriter&lt;Event, String&gt; writer = JsonUtils.newPartitionedWriter(Event::getTenant,
+     *                                                                                    tenant -&gt; directory.resolve(tenant + ".json"),
+     *                                                                                    JsonOutputFormat.ARRAY))
+     * {
+     *     writer.writeAll(events);
+     * }
+     * </pre>
+     * <p>
+     * Note: the returned {@link JsonPartitionedWriter} has to be closed, which terminates the arrays of all partitions
+     *
+     * @param keyFunction
+     * @param partitionFileFunction
+     *            returns the file of a partition key
+     * @param format
+     * @return
+     */
+    public static <T, K> JsonPartitionedWriter<T, K> newPartitionedWriter(Function<? super T, ? extends K> keyFunction,
+                                                                          Function<? super K, Path> partitionFileFunction, JsonOutputFormat format)
+    {
+        return new JsonPartitionedWriter<>(SHARED_OBJECT_MAPPER, keyFunction, partitionFileFunction, format);
+    }
+
+    /**
+     * Returns a new {@link JsonRollingWriter}, which writes records into a sequence of segment files, each of which is
+     * closed as a complete JSON array or NDJSON file once it reaches the limits defined by
+     * {@link JsonRollingWriter#withMaxBytes(long)}, {@link JsonRollingWriter#withMaxRecords(long)} or
+     * {@link JsonRollingWriter#withMaxDuration(java.time.Duration)}
+     * <p>
+     * Note: the returned {@link JsonRollingWriter} has to be closed, which closes the last segment
+     *
+     * @param segmentFileFunction
+     *            returns the file of the segment with a given index, starting at 0
+     * @param format
+     * @return
+     */
+    public static <T> JsonRollingWriter<T> newRollingWriter(LongFunction<Path> segmentFileFunction, JsonOutputFormat format)
+    {
+        return new JsonRollingWriter<>(SHARED_OBJECT_MAPPER, segmentFileFunction, format);
+    }
+
+    /**
+     * Concatenates the elements of the given UTF-8 encoded JSON array files into one JSON array written into the given
+     * {@link OutputStream}, which is flushed but not closed.
+     * <p>
+     * The elements are not decoded: every file is validated by a scan of the parser, and the raw bytes from its first
+     * element to its last one are then copied as one range, without the outer brackets. So a malformed file is
+     * detected before anything of it has been written.
+     *
+     * @see #concatArrays(List, Writer)
+     * @param arrayFiles
+     * @param outputStream
+     * @throws JSONFormatException
+     *             if any of the files is no well formed JSON array
+     */
+    public static void concatArrays(List<Path> arrayFiles, OutputStream outputStream)
+    {
+        readJson(objectMapper ->
+        {
+            try
+            {
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                boolean empty = true;
+                outputStream.write('[');
+                for (Path arrayFile : arrayFiles)
+                {
+                    try (FileChannel channel = FileChannel.open(arrayFile, StandardOpenOption.READ);
+                            JsonArrayCursor cursor = JsonArrayCursor.open(channel, 0, 0, objectMapper))
+                    {
+                        long start = -1;
+                        long end = -1;
+                        while (cursor.next())
+                        {
+                            start = start < 0 ? cursor.getElementOffset() : start;
+                            cursor.skip();
+                            end = cursor.getCheckpoint()
+                                        .getOffset();
+                        }
+                        assertEndOfContent(cursor.getParser());
+
+                        if (start >= 0)
+                        {
+                            if (!empty)
+                            {
+                                outputStream.write(',');
+                            }
+                            empty = false;
+                            for (long position = start; position < end;)
+                            {
+                                position += channel.transferTo(position, end - position, target);
+                            }
+                        }
+                    }
+                }
+                outputStream.write(']');
+                outputStream.flush();
+                return null;
+            }
+            catch (JsonParseException e)
+            {
+                throw new JSONFormatException(e);
+            }
+        });
+    }
+
+    /**
+     * Similar to {@link #concatArrays(List, OutputStream)} for the JSON arrays of the given {@link Reader}s, whose
+     * elements are copied char by char into the given {@link Writer}, separated by plain commas, and which is flushed
+     * but not closed. Only the chars of the current element are held in memory.
+     * <p>
+     * Note: as the content is validated while it is copied, a malformed array may have been written partially when
+     * the {@link JSONFormatException} is thrown. Calls {@link Reader#close()} on all readers.
+     *
+     * @param readers
+     * @param writer
+     * @throws JSONFormatException
+     *             if any of the readers provides no well formed JSON array
+     */
+    public static void concatArrays(List<? extends Reader> readers, Writer writer)
+    {
+        readJson(objectMapper ->
+        {
+            try
+            {
+                boolean empty = true;
+                writer.write('[');
+                for (Reader reader : readers)
+                {
+                    RecordingReader recordingReader = new RecordingReader(reader);
+                    try (JsonParser jsonParser = objectMapper.getFactory()
+                                                             .createParser(recordingReader))
+                    {
+                        if (jsonParser.nextToken() != JsonToken.START_ARRAY)
+                        {
+                            throw new JsonParseException(jsonParser, "Content must contain a JSON array on root level");
+                        }
+
+                        JsonToken token;
+                        while ((token = jsonParser.nextToken()) != JsonToken.END_ARRAY)
+                        {
+                            if (token == null)
+                            {
+                                throw new JsonParseException(jsonParser, "Unexpected end of input within JSON array");
+                            }
+
+                            long start = jsonParser.currentTokenLocation()
+                                                   .getCharOffset();
+                            jsonParser.skipChildren();
+                            jsonParser.finishToken();
+                            long end = jsonParser.currentLocation()
+                                                 .getCharOffset();
+
+                            if (!empty)
+                            {
+                                writer.write(',');
+                            }
+                            empty = false;
+                            recordingReader.writeTo(writer, start, end);
+                        }
+                        assertEndOfContent(jsonParser);
+                    }
+                }
+                writer.write(']');
+                writer.flush();
+                return null;
+            }
+            catch (JsonParseException e)
+            {
+                throw new JSONFormatException(e);
+            }
+        });
+    }
+
+    private static void assertEndOfContent(JsonParser jsonParser) throws IOException
+    {
+        if (jsonParser.nextToken() != null)
+        {
+            throw new JsonParseException(jsonParser, "Unexpected content after the JSON array");
+        }
+    }
+
+    /**
+     * {@link Reader} keeping the chars read from the underlying {@link Reader} until they are written out by
+     * {@link #writeTo(Writer, long, long)}, which releases all chars before the end of the written range
+     *
+     * @author omnaest
+     */
+    private static class RecordingReader extends Reader
+    {
+        private final Reader reader;
+
+        private char[] buffer = new char[8192];
+        private int    length;
+
+        /**
+         * Char offset within the whole content of the first char of the buffer
+         */
+        private long bufferOffset;
+
+        private RecordingReader(Reader reader)
+        {
+            super();
+            this.reader = reader;
+        }
+
+        @Override
+        public int read(char[] data, int offset, int count) throws IOException
+        {
+            int readCount = this.reader.read(data, offset, count);
+            if (readCount > 0)
+            {
+                if (this.length + readCount > this.buffer.length)
+                {
+                    this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + readCount));
+                }
+                System.arraycopy(data, offset, this.buffer, this.length, readCount);
+                this.length += readCount;
+            }
+            return readCount;
+        }
+
+        /**
+         * Writes the chars of the given range of offsets within the whole content
+         *
+         * @param writer
+         * @param start
+         *            inclusive, not before the end of the previously written range
+         * @param end
+         *            exclusive
+         * @throws IOException
+         */
+        private void writeTo(Writer writer, long start, long end) throws IOException
+        {
+            writer.write(this.buffer, (int) (start - this.bufferOffset), (int) (end - start));
+
+            int released = (int) (end - this.bufferOffset);
+            System.arraycopy(this.buffer, released, this.buffer, 0, this.length - released);
+            this.length -= released;
+            this.bufferOffset = end;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.reader.close();
+        }
+    }
+
+    /**
+     * Similar to {@link #sortArray(Path, Path, Class, Comparator, long)} but sorts by the key the given extractor
+     * returns for each element
+     *
+     * @param inputFile
+     * @param outputFile
+     * @param type
+     * @param keyExtractor
+     * @param memoryBudget
+     */
+    public static <T, K extends Comparable<? super K>> void sortArray(Path inputFile, Path outputFile, Class<T> type,
+                                                                       Function<? super T, ? extends K> keyExtractor, long memoryBudget)
+    {
+        sortArray(inputFile, outputFile, type, Comparator.comparing(keyExtractor), memoryBudget);
+    }
+
+    /**
+     * Sorts the elements of the given UTF-8 encoded JSON array file into the given output file, also for arrays
+     * larger than the heap, by an external merge sort.
+     * <p>
+     * The elements are read in runs of about the given memory budget, each of which is sorted in parallel and spilled
+     * into a compact temporary file, and those are merged into the output in a single pass, holding one element per
+     * run in memory. If the whole array fits into the budget, it is sorted in memory and written directly. The sort is
+     * stable.
+     * <p>
+     * Note: the budget is measured as the size of the raw JSON of the elements, so the heap taken by the bound
+     * elements of a run is usually a multiple of it.
+     *
+     * @param inputFile
+     * @param outputFile
+     * @param type
+     * @param comparator
+     * @param memoryBudget
+     *            in bytes of JSON
+     */
+    public static <T> void sortArray(Path inputFile, Path outputFile, Class<T> type, Comparator<? super T> comparator, long memoryBudget)
+    {
+        List<Path> runFiles = new ArrayList<>();
+        try
+        {
+            List<T> run = readJson(objectMapper ->
+            {
+                try (JsonArrayCursor cursor = JsonArrayCursor.open(inputFile, 0, 0, objectMapper))
+                {
+                    List<T> elements = new ArrayList<>();
+                    long size = 0;
+                    while (cursor.next())
+                    {
+                        long offset = cursor.getElementOffset();
+                        elements.add(cursor.read(type));
+                        size += cursor.getCheckpoint()
+                                      .getOffset()
+                                - offset;
+                        if (size >= memoryBudget)
+                        {
+                            Path runFile = Files.createTempFile("json-sort-run", ".json");
+                            runFiles.add(runFile);
+                            writeSortedRun(elements, comparator, runFile);
+                            elements.clear();
+                            size = 0;
+                        }
+                    }
+                    return elements;
+                }
+            });
+
+            if (runFiles.isEmpty())
+            {
+                writeSortedRun(run, comparator, outputFile);
+            }
+            else
+            {
+                if (!run.isEmpty())
+                {
+                    Path runFile = Files.createTempFile("json-sort-run", ".json");
+                    runFiles.add(runFile);
+                    writeSortedRun(run, comparator, runFile);
+                }
+                run = null;
+                mergeSortedRuns(runFiles, type, comparator, outputFile);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        finally
+        {
+            for (Path runFile : runFiles)
+            {
+                try
+                {
+                    Files.deleteIfExists(runFile);
+                }
+                catch (IOException e)
+                {
+                    LOGGER.warn("Unable to delete temporary sort run file " + runFile, e);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void writeSortedRun(List<T> elements, Comparator<? super T> comparator, Path file) throws IOException
+    {
+        T[] array = (T[]) elements.toArray();
+        Arrays.parallelSort(array, comparator);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            serializeArray(Arrays.stream(array), writer);
+        }
+    }
+
+    private static <T> void mergeSortedRuns(List<Path> runFiles, Class<T> type, Comparator<? super T> comparator, Path outputFile) throws IOException
+    {
+        try (Writer writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8);
+                Stream<T> stream = mergeSortedArrayFiles(runFiles, comparator, type))
+        {
+            serializeArray(stream, writer);
+        }
+    }
+
+    /**
+     * Merges the given JSON arrays, each of which has to be sorted by the given {@link Comparator}, into one lazy
+     * sorted {@link Stream}. Only the current head element of every source is held in memory, within a heap. Equal
+     * elements are returned in the order of their sources.
+     * <p>
+     * Note: the returned {@link Stream} has to be closed by the caller, which closes all given {@link Reader}s.
+     *
+     * @see #mergeSortedArrays(List, Comparator, Class, Writer)
+     * @see #mergeSortedArrayFiles(List, Comparator, Class)
+     * @param readers
+     * @param comparator
+     * @param type
+     * @return
+     */
+    public static <T> Stream<T> mergeSortedArrays(List<? extends Reader> readers, Comparator<? super T> comparator, Class<T> type)
+    {
+        return mergeSortedArrays(readers, reader -> readArrayFromReader(reader, type), comparator);
+    }
+
+    /**
+     * Similar to {@link #mergeSortedArrays(List, Comparator, Class)} but writes the merged array into the given
+     * {@link Writer}, which is not closed. The given {@link Reader}s are closed.
+     *
+     * @param readers
+     * @param comparator
+     * @param type
+     * @param writer
+     */
+    public static <T> void mergeSortedArrays(List<? extends Reader> readers, Comparator<? super T> comparator, Class<T> type, Writer writer)
+    {
+        try (Stream<T> stream = mergeSortedArrays(readers, comparator, type))
+        {
+            serializeArray(stream, writer);
+        }
+    }
+
+    /**
+     * Similar to {@link #mergeSortedArrays(List, Comparator, Class)} for UTF-8 encoded JSON array files
+     * <p>
+     * Note: the returned {@link Stream} has to be closed by the caller.
+     *
+     * @param arrayFiles
+     * @param comparator
+     * @param type
+     * @return
+     */
+    public static <T> Stream<T> mergeSortedArrayFiles(List<Path> arrayFiles, Comparator<? super T> comparator, Class<T> type)
+    {
+        return mergeSortedArrays(arrayFiles, arrayFile -> readArrayFromFile(arrayFile, type), comparator);
+    }
+
+    private static <S, T> Stream<T> mergeSortedArrays(List<? extends S> sources, Function<S, Stream<T>> sourceReader, Comparator<? super T> comparator)
+    {
+        List<Stream<T>> streams = new ArrayList<>(sources.size());
+        Runnable closeHandler = () ->
+        {
+            RuntimeException exception = null;
+            for (Stream<T> stream : streams)
+            {
+                try
+                {
+                    stream.close();
+                }
+                catch (RuntimeException e)
+                {
+                    if (exception == null)
+                    {
+                        exception = e;
+                    }
+                    else
+                    {
+                        exception.addSuppressed(e);
+                    }
+                }
+            }
+            if (exception != null)
+            {
+                throw exception;
+            }
+        };
+
+        try
+        {
+            for (S source : sources)
+            {
+                streams.add(sourceReader.apply(source));
+            }
+            Iterable<T> iterable = () -> new JsonSortedMergeIterator<>(streams.stream()
+                                                                              .map(Stream::iterator)
+                                                                              .collect(Collectors.toList()),
+                                                                       comparator);
+            return StreamSupport.stream(iterable.spliterator(), false)
+                                .onClose(closeHandler);
+        }
+        catch (RuntimeException e)
+        {
+            try
+            {
+                closeHandler.run();
+            }
+            catch (RuntimeException suppressed)
+            {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@link Iterator} merging the elements of several sorted {@link Iterator}s into one sorted sequence, holding only
+     * the current head element of each source within a heap. Equal elements are returned in the order of their
+     * sources.
+     *
+     * @author omnaest
+     * @param <T>
+     */
+    private static class JsonSortedMergeIterator<T> implements Iterator<T>
+    {
+        private final PriorityQueue<MergeHead<T>> heads;
+
+        private JsonSortedMergeIterator(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator)
+        {
+            super();
+            Comparator<MergeHead<T>> headComparator = (head1, head2) -> comparator.compare(head1.value, head2.value);
+            this.heads = new PriorityQueue<>(Math.max(1, sources.size()), headComparator.thenComparingInt(head -> head.sourceIndex));
+            for (int ii = 0; ii < sources.size(); ii++)
+            {
+                this.advance(new MergeHead<>(sources.get(ii), ii));
+            }
+        }
+
+        private void advance(MergeHead<T> head)
+        {
+            if (head.source.hasNext())
+            {
+                head.value = head.source.next();
+                this.heads.add(head);
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return !this.heads.isEmpty();
+        }
+
+        @Override
+        public T next()
+        {
+            MergeHead<T> head = this.heads.poll();
+            if (head == null)
+            {
+                throw new NoSuchElementException("No further element available within the merged JSON arrays");
+            }
+
+            T value = head.value;
+            this.advance(head);
+            return value;
+        }
+
+        private static class MergeHead<T>
+        {
+            private final Iterator<? extends T> source;
+            private final int                   sourceIndex;
+            private T                           value;
+
+            private MergeHead(Iterator<? extends T> source, int sourceIndex)
+            {
+                super();
+                this.source = source;
+                this.sourceIndex = sourceIndex;
+            }
+        }
+    }
+
+    private static interface JsonCursorReadOperation<R>
+    {
+        public R apply(JsonArrayCursor cursor) throws IOException;
+    }
+
+    /**
+     * Opens a {@link JsonArrayCursor} on the given file and returns the {@link Stream} of the elements read by the
+     * given operation, which closes the cursor and the file on close
+     *
+     * @param arrayFile
+     * @param offset
+     *            see {@link JsonArrayCursor#open(FileChannel, long, long, ObjectMapper)}
+     * @param index
+     *            the index of the element at the offset
+     * @param fromIndex
+     *            the index of the first element to return, which must not be smaller than the index
+     * @param readOperation
+     * @return
+     */
+    private static <R> Stream<R> readArrayFromFile(Path arrayFile, long offset, long index, long fromIndex, JsonCursorReadOperation<R> readOperation)
+    {
+        return readJson(objectMapper ->
+        {
+            JsonArrayCursor cursor = JsonArrayCursor.open(arrayFile, offset, index, objectMapper);
+            try
+            {
+                for (long ii = index; ii < fromIndex && cursor.next(); ii++)
+                {
+                    cursor.skip();
+                }
+
+                Iterable<R> iterable = () -> new JsonArrayCursorIterator<>(cursor, readOperation);
+                return StreamSupport.stream(iterable.spliterator(), false)
+                                    .onClose(() ->
+                                    {
+                                        try
+                                        {
+                                            cursor.close();
+                                        }
+                                        catch (IOException e)
+                                        {
+                                            throw new IllegalStateException(e);
+                                        }
+                                    });
+            }
+            catch (Exception e)
+            {
+                try
+                {
+                    cursor.close();
+                }
+                catch (IOException suppressed)
+                {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * {@link Iterator} over the elements of a {@link JsonArrayCursor}
+     *
+     * @author omnaest
+     * @param <R>
+     */
+    private static class JsonArrayCursorIterator<R> implements Iterator<R>
+    {
+        private final JsonArrayCursor            cursor;
+        private final JsonCursorReadOperation<R> readOperation;
+
+        /**
+         * The result of the {@link JsonArrayCursor#next()} already called by {@link #hasNext()}, or null
+         */
+        private Boolean positioned;
+
+        private JsonArrayCursorIterator(JsonArrayCursor cursor, JsonCursorReadOperation<R> readOperation)
+        {
+            super();
+            this.cursor = cursor;
+            this.readOperation = readOperation;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (this.positioned == null)
+            {
+                try
+                {
+                    this.positioned = this.cursor.next();
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return this.positioned;
+        }
+
+        @Override
+        public R next()
+        {
+            if (!this.hasNext())
+            {
+                throw new NoSuchElementException("No further element available within the JSON array");
+            }
+
+            try
+            {
+                this.positioned = null;
+                return this.readOperation.apply(this.cursor);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Similar to {@link #readArrayFromReader(Reader, Class)} for a JSON array of integral numbers, but without
+     * boxing: the values are taken from the {@link JsonParser} as primitive ints, so no object is allocated per
+     * element.
+     * <p>
+     * Note: the returned {@link IntStream} has to be closed by the caller, like the one of
+     * {@link #readArrayFromReader(Reader, Class)}. Elements that are no integral number, like null, or numbers
+     * out of the int range, fail the stream with an {@link IllegalStateException}.
+     *
+     * @param reader
+     * @return
+     */
+    public static IntStream readIntArray(Reader reader)
+    {
+        return readArrayFromReader(reader, IntStream.empty(),
+                                   (objectMapper, jsonParser) -> StreamSupport.intStream(Spliterators.spliteratorUnknownSize(new JsonIntArrayIterator(jsonParser),
+                                                                                                                             NUMBER_ARRAY_CHARACTERISTICS),
+                                                                                         false));
+    }
+
+    /**
+     * Similar to {@link #readIntArray(Reader)} but for long values
+     *
+     * @param reader
+     * @return
+     */
+    public static LongStream readLongArray(Reader reader)
+    {
+        return readArrayFromReader(reader, LongStream.empty(),
+                                   (objectMapper, jsonParser) -> StreamSupport.longStream(Spliterators.spliteratorUnknownSize(new JsonLongArrayIterator(jsonParser),
+                                                                                                                              NUMBER_ARRAY_CHARACTERISTICS),
+                                                                                          false));
+    }
+
+    /**
+     * Similar to {@link #readIntArray(Reader)} but for double values, which accepts integral numbers as well
+     *
+     * @param reader
+     * @return
+     */
+    public static DoubleStream readDoubleArray(Reader reader)
+    {
+        return readArrayFromReader(reader, DoubleStream.empty(),
+                                   (objectMapper, jsonParser) -> StreamSupport.doubleStream(Spliterators.spliteratorUnknownSize(new JsonDoubleArrayIterator(jsonParser),
+                                                                                                                                NUMBER_ARRAY_CHARACTERISTICS),
+                                                                                            false));
+    }
+
+    private static <S extends BaseStream<?, S>> S readArrayFromReader(Reader reader, S emptyStream,
+                                                                       BiFunction<ObjectMapper, JsonParser, S> streamFactory)
+    {
+        return readContainerFromReader(reader, JsonToken.START_ARRAY, emptyStream, streamFactory);
+    }
+
+    /**
+     * Opens a {@link JsonParser} on the given {@link Reader}, positions it on the root JSON array or object, and
+     * returns the {@link BaseStream} created by the given factory, which closes the parser on close
+     *
+     * @param reader
+     * @param rootToken
+     *            {@link JsonToken#START_ARRAY} or {@link JsonToken#START_OBJECT}
+     * @param emptyStream
+     *            returned for a null {@link Reader}
+     * @param streamFactory
+     * @return
+     */
+    private static <S extends BaseStream<?, S>> S readContainerFromReader(Reader reader, JsonToken rootToken, S emptyStream,
+                                                                           BiFunction<ObjectMapper, JsonParser, S> streamFactory)
+    {
+        if (reader == null)
+        {
+            return emptyStream;
+        }
+        return readContainer(objectMapper -> objectMapper.getFactory()
+                                                         .createParser(reader),
+                             rootToken, streamFactory);
+    }
+
+    /**
+     * Similar to {@link #readContainerFromReader(Reader, JsonToken, BaseStream, BiFunction)} for the
+     * {@link JsonParser} opened by the given {@link JsonParserOpener}
+     *
+     * @param parserOpener
+     * @param rootToken
+     * @param streamFactory
+     * @return
+     */
+    private static <S extends BaseStream<?, S>> S readContainer(JsonParserOpener parserOpener, JsonToken rootToken,
+                                                                BiFunction<ObjectMapper, JsonParser, S> streamFactory)
+    {
+        return readStream(parserOpener, (objectMapper, jsonParser) ->
+        {
+            if (jsonParser.nextToken() != rootToken)
+            {
+                throw new IllegalStateException("Content must contain a JSON " + (rootToken == JsonToken.START_ARRAY ? "array" : "object")
+                        + " on root level");
+            }
+            return streamFactory.apply(objectMapper, jsonParser);
+        });
+    }
+
+    private static interface JsonStreamFactory<S>
+    {
+        public S apply(ObjectMapper objectMapper, JsonParser jsonParser) throws Exception;
+    }
+
+    private static interface JsonParserOpener
+    {
+        public JsonParser open(ObjectMapper objectMapper) throws Exception;
+    }
+
+    /**
+     * Opens a {@link JsonParser} on the given {@link Reader} and returns the {@link BaseStream} created by the given
+     * factory, which closes the parser on close
+     *
+     * @param reader
+     * @param emptyStream
+     *            returned for a null {@link Reader}
+     * @param streamFactory
+     *            positions the parser and creates the {@link BaseStream}
+     * @return
+     */
+    private static <S extends BaseStream<?, S>> S readStreamFromReader(Reader reader, S emptyStream, JsonStreamFactory<S> streamFactory)
+    {
+        if (reader == null)
+        {
+            return emptyStream;
+        }
+        return readStream(objectMapper -> objectMapper.getFactory()
+                                                      .createParser(reader),
+                          streamFactory);
+    }
 
+    /**
+     * Opens a {@link JsonParser} by the given {@link JsonParserOpener} and returns the {@link BaseStream} created by
+     * the given factory, which closes the parser on close
+     *
+     * @param parserOpener
+     * @param streamFactory
+     * @return
+     */
+    private static <S extends BaseStream<?, S>> S readStream(JsonParserOpener parserOpener, JsonStreamFactory<S> streamFactory)
+    {
         return readJson(objectMapper ->
         {
-            JsonParser jsonParser = objectMapper.getFactory()
-                                                .createParser(reader);
+            JsonParser jsonParser = parserOpener.open(objectMapper);
             try
             {
-                if (jsonParser.nextToken() != JsonToken.START_ARRAY)
-                {
-                    throw new IllegalStateException("Content must contain a JSON array on root level");
-                }
-
-                Iterable<T> iterable = () -> new JsonArrayIterator<>(jsonParser, objectMapper, type);
-                return StreamSupport.stream(iterable.spliterator(), false)
+                return streamFactory.apply(objectMapper, jsonParser)
                                     .onClose(() -> closeParser(jsonParser));
             }
             catch (Exception e)
             {
-                // from the createParser call on, the parser owns the reader, so every path that does not hand a
+                // from the createParser call on, the parser owns the source, so every path that does not hand a
                 // closing Stream back to the caller has to release it here instead
                 try
                 {
@@ -423,18 +2200,35 @@ public class JsonUtils
          */
         private JsonToken          peekedToken;
 
+        /**
+         * Called once the closing {@link JsonToken#END_ARRAY} has been reached, or null
+         */
+        private Runnable endHandler;
+
         private JsonArrayIterator(JsonParser jsonParser, ObjectMapper objectMapper, Class<T> type)
+        {
+            this(jsonParser, objectMapper, type, null);
+        }
+
+        private JsonArrayIterator(JsonParser jsonParser, ObjectMapper objectMapper, Class<T> type, Runnable endHandler)
         {
             super();
             this.jsonParser = jsonParser;
             this.objectMapper = objectMapper;
             this.type = type;
+            this.endHandler = endHandler;
         }
 
         @Override
         public boolean hasNext()
         {
             JsonToken token = this.peekToken();
+            if (token == JsonToken.END_ARRAY && this.endHandler != null)
+            {
+                Runnable endHandler = this.endHandler;
+                this.endHandler = null;
+                endHandler.run();
+            }
 
             // null means the input ended without a closing bracket; treated as the end of the array as well, as
             // otherwise the iterator would never terminate
@@ -487,12 +2281,334 @@ public class JsonUtils
      */
     public static <T> T readFromString(String data, Class<T> type)
     {
-        return readJson(objectMapper -> data != null && !data.isEmpty() ? objectMapper.readValue(data, type) : null);
+        return readJson(objectMapper -> data != null && !data.isEmpty() ? objectMapper.readValue(data, type) : null);
+    }
+
+    /**
+     * {@link Iterator} over the fields of a JSON object, reading one value at a time from a {@link JsonParser}
+     * positioned just after the opening {@link JsonToken#START_OBJECT}.
+     *
+     * @author omnaest
+     * @param <V>
+     */
+    private static class JsonObjectEntryIterator<V> implements Iterator<Map.Entry<String, V>>
+    {
+        private final JsonParser   jsonParser;
+        private final ObjectMapper objectMapper;
+        private final Class<V>     type;
+
+        /**
+         * The token already pulled by {@link #hasNext()}, see {@link JsonArrayIterator}
+         */
+        private JsonToken peekedToken;
+
+        private JsonObjectEntryIterator(JsonParser jsonParser, ObjectMapper objectMapper, Class<V> type)
+        {
+            super();
+            this.jsonParser = jsonParser;
+            this.objectMapper = objectMapper;
+            this.type = type;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            try
+            {
+                if (this.peekedToken == null)
+                {
+                    this.peekedToken = this.jsonParser.nextToken();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+
+            // null means the input ended without a closing brace, see JsonArrayIterator
+            return this.peekedToken == JsonToken.FIELD_NAME;
+        }
+
+        @Override
+        public Map.Entry<String, V> next()
+        {
+            if (!this.hasNext())
+            {
+                throw new NoSuchElementException("No further field available within the JSON object");
+            }
+
+            try
+            {
+                String fieldName = this.jsonParser.currentName();
+                this.jsonParser.nextToken();
+                V value = this.objectMapper.readValue(this.jsonParser, this.type);
+                this.peekedToken = null;
+                return new AbstractMap.SimpleImmutableEntry<>(fieldName, value);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Base of the primitive {@link Iterator}s over a JSON array of numbers, which like {@link JsonArrayIterator}
+     * read from a {@link JsonParser} positioned just after the opening {@link JsonToken#START_ARRAY}.
+     *
+     * @author omnaest
+     */
+    private static abstract class JsonNumberArrayIterator
+    {
+        private final JsonParser jsonParser;
+        private final boolean    acceptFloats;
+
+        private JsonToken peekedToken;
+
+        private JsonNumberArrayIterator(JsonParser jsonParser, boolean acceptFloats)
+        {
+            super();
+            this.jsonParser = jsonParser;
+            this.acceptFloats = acceptFloats;
+        }
+
+        public boolean hasNext()
+        {
+            if (this.peekedToken == null)
+            {
+                try
+                {
+                    this.peekedToken = this.jsonParser.nextToken();
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            // null means the input ended without a closing bracket, see JsonArrayIterator
+            return this.peekedToken != null && this.peekedToken != JsonToken.END_ARRAY;
+        }
+
+        /**
+         * Returns the {@link JsonParser} positioned on the next number of the array
+         *
+         * @return
+         */
+        protected JsonParser nextNumber()
+        {
+            if (!this.hasNext())
+            {
+                throw new NoSuchElementException("No further element available within the JSON array");
+            }
+            if (this.peekedToken != JsonToken.VALUE_NUMBER_INT && !(this.acceptFloats && this.peekedToken == JsonToken.VALUE_NUMBER_FLOAT))
+            {
+                throw new IllegalStateException("Expected a number within the JSON array but got " + this.peekedToken + " at "
+                        + this.jsonParser.currentLocation());
+            }
+            this.peekedToken = null;
+            return this.jsonParser;
+        }
+    }
+
+    private static class JsonIntArrayIterator extends JsonNumberArrayIterator implements PrimitiveIterator.OfInt
+    {
+        private JsonIntArrayIterator(JsonParser jsonParser)
+        {
+            super(jsonParser, false);
+        }
+
+        @Override
+        public int nextInt()
+        {
+            try
+            {
+                return this.nextNumber()
+                           .getIntValue();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class JsonLongArrayIterator extends JsonNumberArrayIterator implements PrimitiveIterator.OfLong
+    {
+        private JsonLongArrayIterator(JsonParser jsonParser)
+        {
+            super(jsonParser, false);
+        }
+
+        @Override
+        public long nextLong()
+        {
+            try
+            {
+                return this.nextNumber()
+                           .getLongValue();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class JsonDoubleArrayIterator extends JsonNumberArrayIterator implements PrimitiveIterator.OfDouble
+    {
+        private JsonDoubleArrayIterator(JsonParser jsonParser)
+        {
+            super(jsonParser, true);
+        }
+
+        @Override
+        public double nextDouble()
+        {
+            try
+            {
+                return this.nextNumber()
+                           .getDoubleValue();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public static <T> T readFromString(String data, TypeReference<T> typeReference)
+    {
+        return readJson(objectMapper -> objectMapper.readValue(data, typeReference));
+    }
+
+    /**
+     * Returns a lazily decoded {@link JsonTapeDocument} for the given JSON {@link String}. Compared to reading a
+     * {@link JsonNode} tree, only a structural index is built upfront, and values are decoded when they are accessed
+     * by JSON pointer - which makes sparse reads of large documents much cheaper.
+     *
+     * @see #readTapeDocumentFromBytes(byte[])
+     * @see #readTapeDocumentFromFile(Path)
+     * @param data
+     * @return null, if the given data is null or empty
+     */
+    public static JsonTapeDocument readTapeDocumentFromString(String data)
+    {
+        return data != null && !data.isEmpty() ? readTapeDocumentFromBytes(data.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * Similar to {@link #readTapeDocumentFromString(String)} for UTF-8 encoded bytes. The given array is referenced
+     * by the returned document rather than copied, so it must not be modified afterwards.
+     *
+     * @param data
+     * @return null, if the given data is null or empty
+     */
+    public static JsonTapeDocument readTapeDocumentFromBytes(byte[] data)
+    {
+        return data != null && data.length > 0 ? JsonTapeDocument.of(data, SHARED_OBJECT_MAPPER) : null;
+    }
+
+    /**
+     * Similar to {@link #readTapeDocumentFromString(String)} for a UTF-8 encoded file, which is read into memory as it
+     * is
+     *
+     * @param file
+     * @return null, if the file is empty
+     */
+    public static JsonTapeDocument readTapeDocumentFromFile(Path file)
+    {
+        return readJson(objectMapper -> readTapeDocumentFromBytes(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Returns the value at the given {@link JsonPointer} within the JSON from the given {@link Reader}, without building
+     * a tree of the whole content: only the value at the pointer is bound, everything beside its path is skipped at
+     * tokenizer level, and reading stops right after the value.
+     * <p>
+     * Note: calls {@link Reader#close()}
+     *
+     * @see #extract(Reader, Collection, Class)
+     * @param reader
+     * @param pointer
+     * @param type
+     * @return empty, if there is no value or null at the pointer
+     */
+    public static <T> Optional<T> extract(Reader reader, JsonPointer pointer, Class<T> type)
+    {
+        return Optional.ofNullable(extract(reader, Arrays.asList(pointer), type).get(pointer));
+    }
+
+    /**
+     * Similar to {@link #extract(Reader, JsonPointer, Class)} for UTF-8 encoded bytes
+     *
+     * @param data
+     * @param pointer
+     * @param type
+     * @return
+     */
+    public static <T> Optional<T> extract(byte[] data, JsonPointer pointer, Class<T> type)
+    {
+        return Optional.ofNullable(extract(data, Arrays.asList(pointer), type).get(pointer));
+    }
+
+    /**
+     * Similar to {@link #extract(Reader, JsonPointer, Class)} for a {@link String}
+     *
+     * @param data
+     * @param pointer
+     * @param type
+     * @return
+     */
+    public static <T> Optional<T> extract(String data, JsonPointer pointer, Class<T> type)
+    {
+        return Optional.ofNullable(extract(data, Arrays.asList(pointer), type).get(pointer));
+    }
+
+    /**
+     * Similar to {@link #extract(Reader, JsonPointer, Class)} for multiple {@link JsonPointer}s, which are all resolved
+     * in a single pass that stops as soon as all of them have been found. Use {@link JsonNode} or {@link Object} as type
+     * for values of different types. Of duplicate field names, the first one wins.
+     * <p>
+     * Note: calls {@link Reader#close()}
+     *
+     * @see JsonPointerExtractor
+     * @param reader
+     * @param pointers
+     * @param type
+     * @return the values by pointer, without the pointers not found, and with a null value for pointers to null
+     */
+    public static <T> Map<JsonPointer, T> extract(Reader reader, Collection<JsonPointer> pointers, Class<T> type)
+    {
+        return extract(objectMapper -> objectMapper.getFactory()
+                                                   .createParser(reader),
+                       pointers, type);
     }
 
-    public static <T> T readFromString(String data, TypeReference<T> typeReference)
+    public static <T> Map<JsonPointer, T> extract(byte[] data, Collection<JsonPointer> pointers, Class<T> type)
     {
-        return readJson(objectMapper -> objectMapper.readValue(data, typeReference));
+        return extract(objectMapper -> objectMapper.getFactory()
+                                                   .createParser(data),
+                       pointers, type);
+    }
+
+    public static <T> Map<JsonPointer, T> extract(String data, Collection<JsonPointer> pointers, Class<T> type)
+    {
+        return extract(objectMapper -> objectMapper.getFactory()
+                                                   .createParser(data),
+                       pointers, type);
+    }
+
+    private static <T> Map<JsonPointer, T> extract(JsonReadOperation<JsonParser> parserFactory, Collection<JsonPointer> pointers, Class<T> type)
+    {
+        JsonPointerExtractor extractor = JsonPointerExtractor.of(pointers);
+        return readJson(objectMapper ->
+        {
+            try (JsonParser jsonParser = parserFactory.apply(objectMapper))
+            {
+                return extractor.extract(jsonParser, objectMapper, type);
+            }
+        });
     }
 
     /**
@@ -547,6 +2663,10 @@ public class JsonUtils
 
     /**
      * Uses {@link ObjectMapper} to map from one object to another
+     * <p>
+     * A {@link Map} given for a plain bean type - no Jackson annotations, a default constructor - is bound directly
+     * by a {@link JsonBeanBinder}, which sets the bean properties while walking the {@link Map} instead of
+     * serializing it into a {@code TokenBuffer} and parsing that again. The result is the same.
      *
      * @see #toObjectWithType(Map, Class)
      * @see #toMap(Object)
@@ -556,6 +2676,10 @@ public class JsonUtils
      */
     public static <O, T> T toObjectWithType(O object, Class<T> type)
     {
+        if (object instanceof Map)
+        {
+            return BEAN_BINDER.toObject((Map<?, ?>) object, type);
+        }
         return SHARED_OBJECT_MAPPER.convertValue(object, type);
     }
 
@@ -591,6 +2715,9 @@ public class JsonUtils
 
     /**
      * Returns a nested {@link Map} generated from the given bean
+     * <p>
+     * Like {@link #toObjectWithType(Object, Class)} this reads plain beans directly through their getters, see
+     * {@link JsonBeanBinder}.
      *
      * @see #toObjectWithType(Object, Class)
      * @see #toObjectWithType(Map, Class)
@@ -600,7 +2727,7 @@ public class JsonUtils
     @SuppressWarnings("unchecked")
     public static <O, M extends Map<String, ? extends Object>> M toMap(O object)
     {
-        return (M) toObjectWithType(object, Map.class);
+        return (M) BEAN_BINDER.toMap(object);
     }
 
     /**
@@ -628,6 +2755,192 @@ public class JsonUtils
                        .map(arrayNode -> (ArrayNode) arrayNode);
     }
 
+    /**
+     * Similar to {@link #toJsonNode(Object)} but returns a read-only {@link JsonCompactTree}, which needs considerably
+     * less heap than a {@link JsonNode} tree for documents that are kept around for lookups.
+     *
+     * @see #toCompactTree(Object, JsonKeyDictionary)
+     * @see #readCompactTreeFromString(String)
+     * @param object
+     * @return
+     */
+    public static JsonCompactTree toCompactTree(Object object)
+    {
+        return toCompactTree(object, new JsonKeyDictionary());
+    }
+
+    /**
+     * Similar to {@link #toCompactTree(Object)} but interns the field names with the given {@link JsonKeyDictionary},
+     * which can be shared by many trees of documents with the same structure.
+     *
+     * @param object
+     * @param keyDictionary
+     * @return
+     */
+    public static JsonCompactTree toCompactTree(Object object, JsonKeyDictionary keyDictionary)
+    {
+        return readJson(objectMapper ->
+        {
+            TokenBuffer tokenBuffer = new TokenBuffer(objectMapper, false);
+            objectMapper.writeValue(tokenBuffer, object);
+            try (JsonParser jsonParser = tokenBuffer.asParser(objectMapper))
+            {
+                return JsonCompactTree.read(jsonParser, keyDictionary);
+            }
+        });
+    }
+
+    /**
+     * Reads a {@link JsonCompactTree} from the given JSON {@link String}
+     *
+     * @see #toCompactTree(Object)
+     * @param data
+     * @return null, if the given data is null or empty
+     */
+    public static JsonCompactTree readCompactTreeFromString(String data)
+    {
+        return readCompactTreeFromString(data, new JsonKeyDictionary());
+    }
+
+    public static JsonCompactTree readCompactTreeFromString(String data, JsonKeyDictionary keyDictionary)
+    {
+        return data != null && !data.isEmpty() ? readCompactTreeFromReader(new StringReader(data), keyDictionary) : null;
+    }
+
+    /**
+     * Reads a {@link JsonCompactTree} from the given {@link Reader}, without building a {@link JsonNode} tree in between.
+     * <p>
+     * Note: calls {@link Reader#close()}
+     *
+     * @see #toCompactTree(Object)
+     * @param reader
+     * @return
+     */
+    public static JsonCompactTree readCompactTreeFromReader(Reader reader)
+    {
+        return readCompactTreeFromReader(reader, new JsonKeyDictionary());
+    }
+
+    public static JsonCompactTree readCompactTreeFromReader(Reader reader, JsonKeyDictionary keyDictionary)
+    {
+        if (reader == null)
+        {
+            return null;
+        }
+
+        return readJson(objectMapper ->
+        {
+            try (JsonParser jsonParser = objectMapper.getFactory()
+                                                     .createParser(reader))
+            {
+                return JsonCompactTree.read(jsonParser, keyDictionary);
+            }
+        });
+    }
+
+    /**
+     * Reads a JSON array of flat records from the given {@link Reader} into a {@link JsonColumnarTable}, which holds the
+     * values per field in primitive and dictionary encoded columns instead of one object per record. Serializing the
+     * table, e.g. with {@link #serialize(Object, Writer)}, writes the array of records again.
+     * <p>
+     * Note: calls {@link Reader#close()}
+     *
+     * @see #readColumnarTableFromReader(Reader, boolean)
+     * @param reader
+     * @return
+     */
+    public static JsonColumnarTable readColumnarTableFromReader(Reader reader)
+    {
+        boolean offHeap = false;
+        return readColumnarTableFromReader(reader, offHeap);
+    }
+
+    /**
+     * Similar to {@link #readColumnarTableFromReader(Reader)}
+     *
+     * @param reader
+     * @param offHeap
+     *            if true, the numeric and string code columns are held in direct {@link java.nio.ByteBuffer}s
+     * @return
+     */
+    public static JsonColumnarTable readColumnarTableFromReader(Reader reader, boolean offHeap)
+    {
+        if (reader == null)
+        {
+            return null;
+        }
+
+        return readJson(objectMapper ->
+        {
+            try (JsonParser jsonParser = objectMapper.getFactory()
+                                                     .createParser(reader))
+            {
+                return JsonColumnarTable.read(jsonParser, offHeap);
+            }
+        });
+    }
+
+    /**
+     * Aggregates the JSON array of records of the given {@link Reader} by the given {@link JsonAggregation}, reading
+     * only the key and aggregated fields of the records without binding them. The result can be written as JSON by
+     * {@link #serialize(Object, Writer)}.
+     * <p>
+     * Note: calls {@link Reader#close()}
+     *
+     * @see #aggregateArrays(List, JsonAggregation)
+     * @param reader
+     * @param aggregation
+     * @return
+     */
+    public static JsonAggregation.Result aggregateArray(Reader reader, JsonAggregation aggregation)
+    {
+        return readJson(objectMapper ->
+        {
+            try (JsonParser jsonParser = objectMapper.getFactory()
+                                                     .createParser(reader))
+            {
+                return aggregation.aggregate(jsonParser);
+            }
+        });
+    }
+
+    /**
+     * Similar to {@link #aggregateArray(Reader, JsonAggregation)} for several chunks of records, each given as JSON
+     * array by its own {@link Reader}, which are aggregated in parallel within the {@link ForkJoinPool#commonPool()}
+     * and merged into one result
+     * <p>
+     * Note: calls {@link Reader#close()} on all readers, also on those which have not been read because the
+     * aggregation of another one has failed
+     *
+     * @param readers
+     * @param aggregation
+     * @return
+     */
+    public static JsonAggregation.Result aggregateArrays(List<? extends Reader> readers, JsonAggregation aggregation)
+    {
+        try
+        {
+            return readers.parallelStream()
+                          .map(reader -> aggregateArray(reader, aggregation))
+                          .reduce(aggregation.emptyResult(), JsonAggregation.Result::merge);
+        }
+        catch (RuntimeException e)
+        {
+            for (Reader reader : readers)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException suppressed)
+                {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
     /**
      * {@link Function} which does use {@link #prettyPrint(Object)}
      * <p>
@@ -664,7 +2977,25 @@ public class JsonUtils
      */
     public static interface JsonByteArraySerializer<T> extends Function<T, byte[]>
     {
+        /**
+         * Similar to {@link #apply(Object)} but writes into {@link ByteBuffer}s instead of a byte array, see
+         * {@link JsonUtils#serialize(Object, ByteBuffer, Supplier)}
+         *
+         * @param object
+         * @param buffer
+         * @param bufferSupplier
+         * @return the {@link ByteBuffer}s written to, flipped
+         */
+        public List<ByteBuffer> writeTo(T object, ByteBuffer buffer, Supplier<ByteBuffer> bufferSupplier);
 
+        /**
+         * Similar to {@link #apply(Object)} but writes into the given {@link WritableByteChannel}, which is not
+         * closed, see {@link JsonUtils#serialize(Object, WritableByteChannel)}
+         *
+         * @param object
+         * @param channel
+         */
+        public void writeTo(T object, WritableByteChannel channel);
     }
 
     public static interface JsonWriterSerializer<T> extends BiConsumer<T, Writer>
@@ -711,7 +3042,25 @@ public class JsonUtils
 
     public static interface JsonByteArrayDeserializer<T> extends Function<byte[], T>
     {
+        /**
+         * Similar to {@link #apply(Object)} but reads the given slice of the byte array in place, so several messages
+         * can be read out of one shared receive buffer without copying each of them
+         *
+         * @param data
+         * @param offset
+         * @param length
+         * @return
+         */
+        public T apply(byte[] data, int offset, int length);
 
+        /**
+         * Similar to {@link #apply(byte[], int, int)} for the remaining bytes of the given heap or direct
+         * {@link ByteBuffer}, which are read in place as well. The position of the {@link ByteBuffer} is not changed.
+         *
+         * @param buffer
+         * @return
+         */
+        public T apply(ByteBuffer buffer);
     }
 
     /**
@@ -811,6 +3160,27 @@ public class JsonUtils
                         };
                         return applyWithExecutor(object, objectWriterExecutor);
                     }
+
+                    @Override
+                    public List<ByteBuffer> writeTo(T object, ByteBuffer buffer, Supplier<ByteBuffer> bufferSupplier)
+                    {
+                        return applyWithExecutor(object, ow ->
+                        {
+                            ByteBufferChainOutputStream outputStream = new ByteBufferChainOutputStream(buffer, bufferSupplier);
+                            writeValue(ow, object, outputStream);
+                            return outputStream.getBuffers();
+                        });
+                    }
+
+                    @Override
+                    public void writeTo(T object, WritableByteChannel channel)
+                    {
+                        applyWithExecutor(object, ow ->
+                        {
+                            writeValue(ow, object, Channels.newOutputStream(channel));
+                            return null;
+                        });
+                    }
                 };
             }
 
@@ -1036,6 +3406,46 @@ public class JsonUtils
                         };
                         return applyWithExecutor(data, objectReaderExecutor);
                     }
+
+                    @Override
+                    public T apply(byte[] data, int offset, int length)
+                    {
+                        Function<ObjectReader, T> objectReaderExecutor = or ->
+                        {
+                            try
+                            {
+                                return or.readValue(data, offset, length);
+                            }
+                            catch (IOException e)
+                            {
+                                throw new IllegalStateException(e);
+                            }
+                        };
+                        return applyWithExecutor(data, objectReaderExecutor);
+                    }
+
+                    @Override
+                    public T apply(ByteBuffer buffer)
+                    {
+                        if (buffer != null && buffer.hasArray())
+                        {
+                            return this.apply(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                        }
+
+                        Function<ObjectReader, T> objectReaderExecutor = or ->
+                        {
+                            // reads from a duplicate, so the position of the given buffer stays untouched
+                            try (InputStream inputStream = new ByteBufferBackedInputStream(buffer.duplicate()))
+                            {
+                                return or.readValue(inputStream);
+                            }
+                            catch (IOException e)
+                            {
+                                throw new IllegalStateException(e);
+                            }
+                        };
+                        return applyWithExecutor(buffer, objectReaderExecutor);
+                    }
                 };
             }
         };
@@ -1111,7 +3521,9 @@ public class JsonUtils
     public static <E> JsonCloner<E> cloner(Class<E> type)
     {
         return new JsonCloner<E>() {
-            private ObjectMapper objectMapper = SHARED_OBJECT_MAPPER;
+            private ObjectMapper objectMapper         = SHARED_OBJECT_MAPPER;
+            private ForkJoinPool forkJoinPool         = ForkJoinPool.commonPool();
+            private int          parallelismThreshold = DEFAULT_CLONE_PARALLELISM_THRESHOLD;
 
             @Override
             public E apply(E element)
@@ -1121,6 +3533,52 @@ public class JsonUtils
                                .orElse(null);
             }
 
+            @SuppressWarnings("unchecked")
+            @Override
+            public List<E> applyAll(Collection<? extends E> elements)
+            {
+                if (elements == null || elements.isEmpty())
+                {
+                    return new ArrayList<>();
+                }
+
+                Object[] source = elements.toArray();
+                Object[] target = new Object[source.length];
+                if (source.length <= this.parallelismThreshold)
+                {
+                    new CloneTask<>(this, source, target, 0, source.length, this.parallelismThreshold).compute();
+                }
+                else
+                {
+                    this.forkJoinPool.invoke(new CloneTask<>(this, source, target, 0, source.length, this.parallelismThreshold));
+                }
+                return (List<E>) new ArrayList<>(Arrays.asList(target));
+            }
+
+            @Override
+            public Stream<E> applyAll(Stream<? extends E> elements)
+            {
+                return Optional.ofNullable(elements)
+                               .map(stream -> stream.parallel()
+                                                    .map(element -> this.apply(element)))
+                               .orElse(Stream.empty());
+            }
+
+            @Override
+            public JsonCloner<E> withParallelismThreshold(int parallelismThreshold)
+            {
+                this.parallelismThreshold = Math.max(1, parallelismThreshold);
+                return this;
+            }
+
+            @Override
+            public JsonCloner<E> withForkJoinPool(ForkJoinPool forkJoinPool)
+            {
+                this.forkJoinPool = Optional.ofNullable(forkJoinPool)
+                                            .orElse(ForkJoinPool.commonPool());
+                return this;
+            }
+
             @SuppressWarnings("unchecked")
             private Class<E> determineEffectiveType(E element)
             {
@@ -1155,11 +3613,119 @@ public class JsonUtils
         };
     }
 
+    /**
+     * Default for {@link JsonCloner#withParallelismThreshold(int)}
+     */
+    private static final int DEFAULT_CLONE_PARALLELISM_THRESHOLD = 1000;
+
+    /**
+     * {@link UnaryOperator} which clones the element given to it by a conversion through the {@link ObjectMapper}
+     * <p>
+     * Note: mutable, with the same caveats as {@link JsonStringSerializer} - configure before the first
+     * {@link #apply(Object)}. Once configured an instance is safe to be used from multiple threads, which is what
+     * {@link #applyAll(Collection)} and {@link #applyAll(Stream)} rely on: all their worker threads share the one
+     * {@link ObjectMapper} of this cloner, and therefore its serializer and deserializer caches.
+     *
+     * @author omnaest
+     * @param <E>
+     */
     public static interface JsonCloner<E> extends UnaryOperator<E>
     {
         public JsonCloner<E> usingKeyDeserializer(Class<?> type, KeyDeserializer keyDeserializer);
 
         public <K> JsonCloner<E> withKeySerializer(Class<K> type, JsonSerializer<K> keySerializer);
+
+        /**
+         * Clones all given elements and returns the clones in the iteration order of the given {@link Collection}.
+         * <p>
+         * Collections larger than the {@link #withParallelismThreshold(int)} are split recursively into chunks of at
+         * most that size, which are cloned within the {@link #withForkJoinPool(ForkJoinPool)}. Smaller ones are
+         * cloned on the calling thread, since forking would cost more than it gains there.
+         *
+         * @param elements
+         * @return a new mutable {@link List}, never null
+         */
+        public List<E> applyAll(Collection<? extends E> elements);
+
+        /**
+         * Lazily clones the elements of the given {@link Stream}, which is turned into a parallel one for that.
+         * <p>
+         * Note: like any parallel {@link Stream}, the work runs within the {@link ForkJoinPool} the terminal operation
+         * is invoked from, which is the {@link ForkJoinPool#commonPool()} unless invoked from within another pool. The
+         * encounter order is kept for order sensitive terminal operations like {@link Stream#collect}.
+         *
+         * @param elements
+         * @return
+         */
+        public Stream<E> applyAll(Stream<? extends E> elements);
+
+        /**
+         * Defines the number of elements up to which {@link #applyAll(Collection)} does not split its work any further.
+         * Defaults to 1000.
+         *
+         * @param parallelismThreshold
+         * @return
+         */
+        public JsonCloner<E> withParallelismThreshold(int parallelismThreshold);
+
+        /**
+         * Defines the {@link ForkJoinPool} {@link #applyAll(Collection)} runs on. Defaults to the
+         * {@link ForkJoinPool#commonPool()}.
+         *
+         * @param forkJoinPool
+         * @return
+         */
+        public JsonCloner<E> withForkJoinPool(ForkJoinPool forkJoinPool);
+    }
+
+    /**
+     * {@link RecursiveAction} behind {@link JsonCloner#applyAll(Collection)}, which halves its index range until it is
+     * not larger than the threshold and then clones that range from the source into the same positions of the target
+     * array. Since every task owns a disjoint range, no synchronization is needed beyond the join.
+     *
+     * @author omnaest
+     * @param <E>
+     */
+    private static class CloneTask<E> extends RecursiveAction
+    {
+        private static final long serialVersionUID = -1786218410395472651L;
+
+        private final UnaryOperator<E> cloner;
+        private final Object[]         source;
+        private final Object[]         target;
+        private final int              fromIndex;
+        private final int              toIndex;
+        private final int              threshold;
+
+        private CloneTask(UnaryOperator<E> cloner, Object[] source, Object[] target, int fromIndex, int toIndex, int threshold)
+        {
+            super();
+            this.cloner = cloner;
+            this.source = source;
+            this.target = target;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.threshold = threshold;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected void compute()
+        {
+            if (this.toIndex - this.fromIndex <= this.threshold)
+            {
+                for (int ii = this.fromIndex; ii < this.toIndex; ii++)
+                {
+                    this.target[ii] = this.cloner.apply((E) this.source[ii]);
+                }
+            }
+            else
+            {
+                int middleIndex = (this.fromIndex + this.toIndex) >>> 1;
+                invokeAll(new CloneTask<>(this.cloner, this.source, this.target, this.fromIndex, middleIndex, this.threshold),
+                          new CloneTask<>(this.cloner, this.source, this.target, middleIndex, this.toIndex, this.threshold));
+            }
+        }
     }
 
     /**
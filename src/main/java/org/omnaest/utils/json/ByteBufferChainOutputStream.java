@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * {@link OutputStream} that writes into a chain of {@link ByteBuffer}s, e.g. direct ones taken from a pool, so that
+ * encoded output can be handed to a channel without being copied into a heap array first.
+ * <p>
+ * Writing starts at the position of the first {@link ByteBuffer}. Whenever the current one is full, the next one is
+ * taken from the given {@link Supplier}. {@link #getBuffers()} returns all buffers written to, flipped, so they are
+ * ready to be read or written to a channel. Not thread safe.
+ *
+ * @author omnaest
+ */
+public class ByteBufferChainOutputStream extends OutputStream
+{
+    private final Supplier<ByteBuffer> bufferSupplier;
+    private final List<ByteBuffer>     buffers = new ArrayList<>();
+
+    private ByteBuffer buffer;
+    private boolean    flipped = false;
+
+    /**
+     * @param buffer
+     *            the first {@link ByteBuffer}, or null to start with one from the supplier
+     * @param bufferSupplier
+     *            the supplier of every further {@link ByteBuffer}, or null, if the output has to fit into the first
+     *            one. Writing beyond the last {@link ByteBuffer} throws a {@link BufferOverflowException}.
+     */
+    public ByteBufferChainOutputStream(ByteBuffer buffer, Supplier<ByteBuffer> bufferSupplier)
+    {
+        super();
+        this.bufferSupplier = bufferSupplier;
+        if (buffer != null)
+        {
+            this.buffer = buffer;
+            this.buffers.add(buffer);
+        }
+    }
+
+    @Override
+    public void write(int value)
+    {
+        this.nextBufferIfFull();
+        this.buffer.put((byte) value);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length)
+    {
+        int index = offset;
+        int remaining = length;
+        while (remaining > 0)
+        {
+            this.nextBufferIfFull();
+            int count = Math.min(remaining, this.buffer.remaining());
+            this.buffer.put(data, index, count);
+            index += count;
+            remaining -= count;
+        }
+    }
+
+    private void nextBufferIfFull()
+    {
+        if (this.flipped)
+        {
+            throw new IllegalStateException("Buffers have already been flipped for reading");
+        }
+        if (this.buffer == null || !this.buffer.hasRemaining())
+        {
+            ByteBuffer nextBuffer = this.bufferSupplier != null ? this.bufferSupplier.get() : null;
+            if (nextBuffer == null)
+            {
+                throw new BufferOverflowException();
+            }
+            if (!nextBuffer.hasRemaining())
+            {
+                throw new IllegalStateException("Supplied buffer has no remaining space");
+            }
+            this.buffer = nextBuffer;
+            this.buffers.add(nextBuffer);
+        }
+    }
+
+    /**
+     * Flips all {@link ByteBuffer}s written to and returns them in order. No further data can be written afterwards.
+     *
+     * @return
+     */
+    public List<ByteBuffer> getBuffers()
+    {
+        if (!this.flipped)
+        {
+            this.flipped = true;
+            this.buffers.forEach(ByteBuffer::flip);
+        }
+        return Collections.unmodifiableList(this.buffers);
+    }
+}
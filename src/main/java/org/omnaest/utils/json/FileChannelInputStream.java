@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link InputStream} reading from a {@link FileChannel} starting at a given position, using positional reads only.
+ * So the position of the {@link FileChannel} itself is never changed, and any number of these streams can read from
+ * the same {@link FileChannel} concurrently.
+ * <p>
+ * Closing this stream does not close the {@link FileChannel}.
+ *
+ * @author omnaest
+ */
+public class FileChannelInputStream extends InputStream
+{
+    private final FileChannel channel;
+    private long              position;
+
+    public FileChannelInputStream(FileChannel channel, long position)
+    {
+        super();
+        this.channel = channel;
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] data = new byte[1];
+        return this.read(data, 0, 1) == 1 ? data[0] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] data, int offset, int length) throws IOException
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+
+        int count = this.channel.read(ByteBuffer.wrap(data, offset, length), this.position);
+        if (count > 0)
+        {
+            this.position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException
+    {
+        long skipped = Math.max(0, Math.min(count, this.channel.size() - this.position));
+        this.position += skipped;
+        return skipped;
+    }
+
+    /**
+     * Returns the position within the {@link FileChannel} the next byte is read from
+     *
+     * @return
+     */
+    public long getPosition()
+    {
+        return this.position;
+    }
+}
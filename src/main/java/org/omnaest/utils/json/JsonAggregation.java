@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+/**
+ * Group by aggregation over a JSON array of records, like {@code [{"category":"a","price":1.5},...]}, computing the
+ * count of records and the count, sum, minimum and maximum of numeric fields per value of a key field.
+ * <p>
+ * The records are never bound: only the key field and the aggregated fields are read from the token stream, everything
+ * else is skipped, and every group keeps its state in primitive accumulators. Only top level fields of the records are
+ * considered. Keys are the JSON text of scalar values, so a numeric {@code 42} becomes the key {@code "42"}. Records
+ * without such a key are ignored, as are values of aggregated fields which are no numbers. Sums are accumulated as
+ * {@code double}.
+ * <p>
+ * The {@link Result}s of several chunks of records can be merged, so chunks can be aggregated in parallel.
+ * <p>
+ * Thread safe, as it is immutable.
+ *
+ * @see #groupBy(String, String...)
+ * @author omnaest
+ */
+public class JsonAggregation
+{
+    private final String               keyField;
+    private final List<String>         valueFields;
+    private final Map<String, Integer> valueFieldIndexes;
+
+    private JsonAggregation(String keyField, List<String> valueFields)
+    {
+        super();
+        this.keyField = keyField;
+        this.valueFields = valueFields;
+        this.valueFieldIndexes = new LinkedHashMap<>();
+        for (int ii = 0; ii < valueFields.size(); ii++)
+        {
+            this.valueFieldIndexes.putIfAbsent(valueFields.get(ii), ii);
+        }
+    }
+
+    /**
+     * Returns a {@link JsonAggregation} grouping by the given key field and aggregating the given numeric fields
+     *
+     * @param keyField
+     * @param valueFields
+     * @return
+     */
+    public static JsonAggregation groupBy(String keyField, String... valueFields)
+    {
+        return new JsonAggregation(keyField, Collections.unmodifiableList(Arrays.asList(valueFields.clone())));
+    }
+
+    public String getKeyField()
+    {
+        return this.keyField;
+    }
+
+    public List<String> getValueFields()
+    {
+        return this.valueFields;
+    }
+
+    /**
+     * Returns a {@link Result} without any group, as identity for {@link Result#merge(Result)}
+     *
+     * @return
+     */
+    public Result emptyResult()
+    {
+        return new Result();
+    }
+
+    /**
+     * Aggregates the JSON array of records the given {@link JsonParser} is positioned at, or whose start is the next
+     * token. The parser is neither advanced beyond that array nor closed.
+     *
+     * @param jsonParser
+     * @return
+     * @throws IOException
+     *             also if the content is no array of records
+     */
+    public Result aggregate(JsonParser jsonParser) throws IOException
+    {
+        Result result = this.emptyResult();
+        JsonToken token = jsonParser.hasCurrentToken() ? jsonParser.currentToken() : jsonParser.nextToken();
+        if (token == null)
+        {
+            return result;
+        }
+        if (token != JsonToken.START_ARRAY)
+        {
+            throw new JsonParseException(jsonParser, "Expected a JSON array of records but got " + token);
+        }
+
+        int valueFieldCount = this.valueFields.size();
+        double[] values = new double[valueFieldCount];
+        boolean[] present = new boolean[valueFieldCount];
+        while ((token = jsonParser.nextToken()) != JsonToken.END_ARRAY)
+        {
+            if (token != JsonToken.START_OBJECT)
+            {
+                throw new JsonParseException(jsonParser, "Expected a record object within the JSON array but got " + token);
+            }
+
+            String key = null;
+            Arrays.fill(present, false);
+            while ((token = jsonParser.nextToken()) == JsonToken.FIELD_NAME)
+            {
+                String fieldName = jsonParser.currentName();
+                token = jsonParser.nextToken();
+                Integer valueFieldIndex = this.valueFieldIndexes.get(fieldName);
+                if (valueFieldIndex != null && token.isNumeric())
+                {
+                    values[valueFieldIndex] = jsonParser.getDoubleValue();
+                    present[valueFieldIndex] = true;
+                }
+                if (this.keyField.equals(fieldName) && token.isScalarValue() && token != JsonToken.VALUE_NULL)
+                {
+                    key = jsonParser.getText();
+                }
+                else
+                {
+                    jsonParser.skipChildren();
+                }
+            }
+            if (token != JsonToken.END_OBJECT)
+            {
+                throw new JsonParseException(jsonParser, "Unexpected end of input within record");
+            }
+
+            if (key != null)
+            {
+                result.groups.computeIfAbsent(key, k -> new Group(valueFieldCount))
+                             .add(values, present);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Groups of a {@link JsonAggregation} by key, in the order of their first record. Serializes into a JSON object
+     * with one field per group, as it is {@link JsonSerializable}.
+     *
+     * @author omnaest
+     */
+    public class Result implements JsonSerializable
+    {
+        private final Map<String, Group> groups = new LinkedHashMap<>();
+
+        private Result()
+        {
+            super();
+        }
+
+        /**
+         * Returns the groups by key
+         *
+         * @return
+         */
+        public Map<String, Group> getGroups()
+        {
+            return Collections.unmodifiableMap(this.groups);
+        }
+
+        /**
+         * Returns the {@link Group} of the given key or null
+         *
+         * @param key
+         * @return
+         */
+        public Group getGroup(String key)
+        {
+            return this.groups.get(key);
+        }
+
+        private JsonAggregation getAggregation()
+        {
+            return JsonAggregation.this;
+        }
+
+        /**
+         * Returns a new {@link Result} combining the groups of this and the given {@link Result}, as if all their
+         * records had been aggregated at once
+         *
+         * @param other
+         * @return
+         * @throws IllegalArgumentException
+         *             if the given {@link Result} stems from a different {@link JsonAggregation}
+         */
+        public Result merge(Result other)
+        {
+            if (other.getAggregation() != JsonAggregation.this)
+            {
+                throw new IllegalArgumentException("Result of a different JsonAggregation cannot be merged");
+            }
+            Result result = new Result();
+            for (Result source : Arrays.asList(this, other))
+            {
+                source.groups.forEach((key, group) -> result.groups.computeIfAbsent(key, k -> new Group(JsonAggregation.this.valueFields.size()))
+                                                                   .merge(group));
+            }
+            return result;
+        }
+
+        @Override
+        public void serialize(JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException
+        {
+            jsonGenerator.writeStartObject(this);
+            for (Map.Entry<String, Group> entry : this.groups.entrySet())
+            {
+                jsonGenerator.writeFieldName(entry.getKey());
+                entry.getValue()
+                     .write(jsonGenerator);
+            }
+            jsonGenerator.writeEndObject();
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator jsonGenerator, SerializerProvider serializerProvider, TypeSerializer typeSerializer)
+                throws IOException
+        {
+            WritableTypeId typeId = typeSerializer.writeTypePrefix(jsonGenerator, typeSerializer.typeId(this, JsonToken.START_OBJECT));
+            this.serialize(jsonGenerator, serializerProvider);
+            typeSerializer.writeTypeSuffix(jsonGenerator, typeId);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Result [groups=" + this.groups + "]";
+        }
+    }
+
+    /**
+     * Accumulated values of the records of one key. Serializes as
+     * {@code {"count":2,"price":{"count":2,"sum":3.0,"min":1.0,"max":2.0,"average":1.5}}}, with one field per
+     * aggregated field.
+     *
+     * @author omnaest
+     */
+    public class Group
+    {
+        private long           count;
+        private final long[]   valueCounts;
+        private final double[] sums;
+        private final double[] mins;
+        private final double[] maxs;
+
+        private Group(int valueFieldCount)
+        {
+            super();
+            this.valueCounts = new long[valueFieldCount];
+            this.sums = new double[valueFieldCount];
+            this.mins = new double[valueFieldCount];
+            this.maxs = new double[valueFieldCount];
+            Arrays.fill(this.mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(this.maxs, Double.NEGATIVE_INFINITY);
+        }
+
+        private void add(double[] values, boolean[] present)
+        {
+            this.count++;
+            for (int ii = 0; ii < values.length; ii++)
+            {
+                if (present[ii])
+                {
+                    this.valueCounts[ii]++;
+                    this.sums[ii] += values[ii];
+                    this.mins[ii] = Math.min(this.mins[ii], values[ii]);
+                    this.maxs[ii] = Math.max(this.maxs[ii], values[ii]);
+                }
+            }
+        }
+
+        private void merge(Group other)
+        {
+            this.count += other.count;
+            for (int ii = 0; ii < this.sums.length; ii++)
+            {
+                this.valueCounts[ii] += other.valueCounts[ii];
+                this.sums[ii] += other.sums[ii];
+                this.mins[ii] = Math.min(this.mins[ii], other.mins[ii]);
+                this.maxs[ii] = Math.max(this.maxs[ii], other.maxs[ii]);
+            }
+        }
+
+        private int indexOf(String valueField)
+        {
+            Integer index = JsonAggregation.this.valueFieldIndexes.get(valueField);
+            if (index == null)
+            {
+                throw new IllegalArgumentException("Field is not aggregated: " + valueField);
+            }
+            return index;
+        }
+
+        /**
+         * Returns the number of records of this group
+         *
+         * @return
+         */
+        public long getCount()
+        {
+            return this.count;
+        }
+
+        /**
+         * Returns the number of records of this group with a number in the given field
+         *
+         * @param valueField
+         * @return
+         */
+        public long getCount(String valueField)
+        {
+            return this.valueCounts[this.indexOf(valueField)];
+        }
+
+        public double getSum(String valueField)
+        {
+            return this.sums[this.indexOf(valueField)];
+        }
+
+        /**
+         * @param valueField
+         * @return {@link Double#NaN}, if there is no number in the given field
+         */
+        public double getMin(String valueField)
+        {
+            int index = this.indexOf(valueField);
+            return this.valueCounts[index] > 0 ? this.mins[index] : Double.NaN;
+        }
+
+        /**
+         * @param valueField
+         * @return {@link Double#NaN}, if there is no number in the given field
+         */
+        public double getMax(String valueField)
+        {
+            int index = this.indexOf(valueField);
+            return this.valueCounts[index] > 0 ? this.maxs[index] : Double.NaN;
+        }
+
+        /**
+         * @param valueField
+         * @return {@link Double#NaN}, if there is no number in the given field
+         */
+        public double getAverage(String valueField)
+        {
+            int index = this.indexOf(valueField);
+            return this.valueCounts[index] > 0 ? this.sums[index] / this.valueCounts[index] : Double.NaN;
+        }
+
+        private void write(JsonGenerator jsonGenerator) throws IOException
+        {
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeNumberField("count", this.count);
+            for (String valueField : JsonAggregation.this.valueFieldIndexes.keySet())
+            {
+                int index = this.indexOf(valueField);
+                jsonGenerator.writeObjectFieldStart(valueField);
+                jsonGenerator.writeNumberField("count", this.valueCounts[index]);
+                jsonGenerator.writeNumberField("sum", this.sums[index]);
+                if (this.valueCounts[index] > 0)
+                {
+                    jsonGenerator.writeNumberField("min", this.mins[index]);
+                    jsonGenerator.writeNumberField("max", this.maxs[index]);
+                    jsonGenerator.writeNumberField("average", this.sums[index] / this.valueCounts[index]);
+                }
+                else
+                {
+                    jsonGenerator.writeNullField("min");
+                    jsonGenerator.writeNullField("max");
+                    jsonGenerator.writeNullField("average");
+                }
+                jsonGenerator.writeEndObject();
+            }
+            jsonGenerator.writeEndObject();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Group [count=" + this.count + ", valueCounts=" + Arrays.toString(this.valueCounts) + ", sums=" + Arrays.toString(this.sums) + "]";
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Position within a UTF-8 encoded JSON array file at an element boundary, from which reading can be resumed by opening
+ * a {@link JsonArrayCursor} there. It consists of the byte offset right behind the end of the last read element, and
+ * the index of the element following it.
+ * <p>
+ * As the parser holds no further state between the elements of an array, these two values are all it takes to
+ * restart. Serializes to and from JSON, so it can be persisted along with the progress of a job.
+ *
+ * @author omnaest
+ */
+public class JsonArrayCheckpoint
+{
+    private static final JsonArrayCheckpoint START = new JsonArrayCheckpoint(0, 0);
+
+    private final long offset;
+    private final long index;
+
+    @JsonCreator
+    public JsonArrayCheckpoint(@JsonProperty("offset") long offset, @JsonProperty("index") long index)
+    {
+        super();
+        this.offset = offset;
+        this.index = index;
+    }
+
+    /**
+     * Returns the {@link JsonArrayCheckpoint} at the start of the file, before the first element
+     *
+     * @return
+     */
+    public static JsonArrayCheckpoint start()
+    {
+        return START;
+    }
+
+    public long getOffset()
+    {
+        return this.offset;
+    }
+
+    /**
+     * Returns the index of the next element to read
+     *
+     * @return
+     */
+    public long getIndex()
+    {
+        return this.index;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Long.hashCode(this.index);
+        result = prime * result + Long.hashCode(this.offset);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof JsonArrayCheckpoint))
+        {
+            return false;
+        }
+        JsonArrayCheckpoint other = (JsonArrayCheckpoint) obj;
+        return this.index == other.index && this.offset == other.offset;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "JsonArrayCheckpoint [offset=" + this.offset + ", index=" + this.index + "]";
+    }
+}
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cursor over the elements of a UTF-8 encoded JSON array file, which knows the byte offset of every element and can
+ * be opened at any element boundary, instead of only at the start of the file.
+ * <p>
+ * Opening at an offset within the array works by letting the parser read a {@code [} followed by the file content
+ * from that offset on: after skipping whitespace and at most one comma, the content there is a sequence of elements
+ * terminated by the closing {@code ]} of the array, which together with the prepended bracket is a valid JSON array
+ * again. So an offset may point at the first byte of an element, as well as right behind the end of the previous
+ * one.
+ * <p>
+ * Not thread safe. Closing the cursor does not close a given {@link FileChannel}, but only one it has opened itself.
+ *
+ * @author omnaest
+ */
+public class JsonArrayCursor implements Closeable
+{
+    private static final byte[] OPENING_BRACKET = { '[' };
+
+    private final JsonParser   jsonParser;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Added to the byte offsets of the parser to get those within the file
+     */
+    private final long offsetShift;
+
+    /**
+     * The {@link FileChannel} opened by {@link #open(Path, long, long, ObjectMapper)}, which is closed together with
+     * this cursor
+     */
+    private FileChannel ownedChannel;
+
+    private long    nextIndex;
+    private long    elementIndex  = -1;
+    private long    elementOffset = -1;
+    private boolean positioned    = false;
+    private boolean consumed      = false;
+
+    private JsonArrayCursor(JsonParser jsonParser, ObjectMapper objectMapper, long offsetShift, long nextIndex)
+    {
+        super();
+        this.jsonParser = jsonParser;
+        this.objectMapper = objectMapper;
+        this.offsetShift = offsetShift;
+        this.nextIndex = nextIndex;
+    }
+
+    /**
+     * Opens a {@link JsonArrayCursor} at the given offset
+     *
+     * @param channel
+     * @param offset
+     *            0 for the start of the file, otherwise the offset of an element, or of the end of the previous one
+     * @param index
+     *            the index of the element at the offset, which is 0 for the start of the file
+     * @param objectMapper
+     * @return
+     * @throws IOException
+     */
+    public static JsonArrayCursor open(FileChannel channel, long offset, long index, ObjectMapper objectMapper) throws IOException
+    {
+        JsonParser jsonParser;
+        long offsetShift;
+        if (offset == 0)
+        {
+            jsonParser = objectMapper.getFactory()
+                                     .createParser(new FileChannelInputStream(channel, 0));
+            offsetShift = 0;
+        }
+        else
+        {
+            long elementsOffset = skipSeparator(channel, offset);
+            InputStream inputStream = new SequenceInputStream(new ByteArrayInputStream(OPENING_BRACKET), new FileChannelInputStream(channel, elementsOffset));
+            jsonParser = objectMapper.getFactory()
+                                     .createParser(inputStream);
+            offsetShift = elementsOffset - OPENING_BRACKET.length;
+        }
+
+        try
+        {
+            if (jsonParser.nextToken() != JsonToken.START_ARRAY)
+            {
+                throw new JsonParseException(jsonParser, "Content must contain a JSON array on root level");
+            }
+            return new JsonArrayCursor(jsonParser, objectMapper, offsetShift, index);
+        }
+        catch (IOException e)
+        {
+            jsonParser.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Similar to {@link #open(FileChannel, long, long, ObjectMapper)}, but opens the {@link FileChannel} on the given
+     * file itself, which is closed by closing the cursor
+     *
+     * @param arrayFile
+     * @param offset
+     * @param index
+     * @param objectMapper
+     * @return
+     * @throws IOException
+     */
+    public static JsonArrayCursor open(Path arrayFile, long offset, long index, ObjectMapper objectMapper) throws IOException
+    {
+        FileChannel channel = FileChannel.open(arrayFile, StandardOpenOption.READ);
+        try
+        {
+            JsonArrayCursor cursor = open(channel, offset, index, objectMapper);
+            cursor.ownedChannel = channel;
+            return cursor;
+        }
+        catch (IOException e)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException suppressed)
+            {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a {@link JsonArrayCursor} at the given {@link JsonArrayCheckpoint}
+     *
+     * @see #getCheckpoint()
+     * @param channel
+     * @param checkpoint
+     * @param objectMapper
+     * @return
+     * @throws IOException
+     */
+    public static JsonArrayCursor open(FileChannel channel, JsonArrayCheckpoint checkpoint, ObjectMapper objectMapper) throws IOException
+    {
+        return open(channel, checkpoint.getOffset(), checkpoint.getIndex(), objectMapper);
+    }
+
+    /**
+     * Returns the offset behind the whitespace and the first comma starting at the given offset
+     *
+     * @param channel
+     * @param offset
+     * @return
+     * @throws IOException
+     */
+    private static long skipSeparator(FileChannel channel, long offset) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        boolean commaSkipped = false;
+        long position = offset;
+        while (channel.read(buffer, position) > 0)
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+                byte character = buffer.get();
+                if (character == ',' && !commaSkipped)
+                {
+                    commaSkipped = true;
+                }
+                else if (character != ' ' && character != '\n' && character != '\r' && character != '\t')
+                {
+                    return position;
+                }
+                position++;
+            }
+            buffer.clear();
+        }
+        return position;
+    }
+
+    /**
+     * Moves to the next element, skipping the current one if it has not been read
+     *
+     * @return false, if the end of the array has been reached
+     * @throws IOException
+     */
+    public boolean next() throws IOException
+    {
+        if (this.positioned && !this.consumed)
+        {
+            this.skip();
+        }
+
+        JsonToken token = this.jsonParser.nextToken();
+        if (token == null || token == JsonToken.END_ARRAY)
+        {
+            this.positioned = false;
+            return false;
+        }
+
+        this.positioned = true;
+        this.consumed = false;
+        this.elementIndex = this.nextIndex++;
+        this.elementOffset = this.jsonParser.currentTokenLocation()
+                                            .getByteOffset()
+                + this.offsetShift;
+        return true;
+    }
+
+    /**
+     * Binds the current element to the given type
+     *
+     * @param type
+     * @return
+     * @throws IOException
+     */
+    public <T> T read(Class<T> type) throws IOException
+    {
+        this.assertUnconsumed();
+        T value = this.objectMapper.readValue(this.jsonParser, type);
+        this.consumed = true;
+        return value;
+    }
+
+    /**
+     * Skips the current element without binding it
+     *
+     * @throws IOException
+     */
+    public void skip() throws IOException
+    {
+        this.assertUnconsumed();
+        this.jsonParser.skipChildren();
+
+        // strings are decoded lazily, and without finishing them the parser would still be within the string
+        this.jsonParser.finishToken();
+        this.consumed = true;
+    }
+
+    /**
+     * Reads the current element up to its end without binding it, and returns the text of the given top level field,
+     * if the element is an object with such a field holding a non null scalar
+     *
+     * @param fieldName
+     * @return null, if there is no such field
+     * @throws IOException
+     */
+    public String readFieldText(String fieldName) throws IOException
+    {
+        this.assertUnconsumed();
+        String text = null;
+        if (this.jsonParser.currentToken() == JsonToken.START_OBJECT)
+        {
+            while (this.jsonParser.nextToken() == JsonToken.FIELD_NAME)
+            {
+                boolean isField = fieldName.equals(this.jsonParser.currentName());
+                JsonToken token = this.jsonParser.nextToken();
+                if (isField && text == null && token.isScalarValue() && token != JsonToken.VALUE_NULL)
+                {
+                    text = this.jsonParser.getText();
+                }
+                else
+                {
+                    this.jsonParser.skipChildren();
+                }
+            }
+        }
+        else
+        {
+            this.jsonParser.skipChildren();
+            this.jsonParser.finishToken();
+        }
+        this.consumed = true;
+        return text;
+    }
+
+    private void assertUnconsumed()
+    {
+        if (!this.positioned || this.consumed)
+        {
+            throw new IllegalStateException("Cursor is not positioned on an unread element");
+        }
+    }
+
+    /**
+     * Returns the {@link JsonParser}, which is positioned on the first token of the current element until that is
+     * read or skipped
+     *
+     * @return
+     */
+    public JsonParser getParser()
+    {
+        return this.jsonParser;
+    }
+
+    /**
+     * Returns the index of the current element within the whole array
+     *
+     * @return
+     */
+    public long getElementIndex()
+    {
+        return this.elementIndex;
+    }
+
+    /**
+     * Returns the byte offset of the first byte of the current element within the file
+     *
+     * @return
+     */
+    public long getElementOffset()
+    {
+        return this.elementOffset;
+    }
+
+    /**
+     * Returns the {@link JsonArrayCheckpoint} right behind the current element, which has to be read or skipped
+     * before
+     *
+     * @return
+     */
+    public JsonArrayCheckpoint getCheckpoint()
+    {
+        if (!this.positioned || !this.consumed)
+        {
+            throw new IllegalStateException("Cursor is not behind a read element");
+        }
+
+        // the parser stops right behind the last token of the element, or at the delimiter terminating a number
+        long offset = this.jsonParser.currentLocation()
+                                     .getByteOffset()
+                + this.offsetShift;
+        return new JsonArrayCheckpoint(offset, this.elementIndex + 1);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            this.jsonParser.close();
+        }
+        catch (IOException e)
+        {
+            if (this.ownedChannel != null)
+            {
+                try
+                {
+                    this.ownedChannel.close();
+                }
+                catch (IOException suppressed)
+                {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        if (this.ownedChannel != null)
+        {
+            this.ownedChannel.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+/**
+ * Element read from a JSON array file together with its index and the {@link JsonArrayCheckpoint} right behind it
+ *
+ * @author omnaest
+ * @param <T>
+ */
+public class JsonArrayElement<T>
+{
+    private final T                   value;
+    private final long                index;
+    private final JsonArrayCheckpoint checkpoint;
+
+    public JsonArrayElement(T value, long index, JsonArrayCheckpoint checkpoint)
+    {
+        super();
+        this.value = value;
+        this.index = index;
+        this.checkpoint = checkpoint;
+    }
+
+    public T getValue()
+    {
+        return this.value;
+    }
+
+    public long getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * Returns the {@link JsonArrayCheckpoint} to resume reading from with the element following this one
+     *
+     * @return
+     */
+    public JsonArrayCheckpoint getCheckpoint()
+    {
+        return this.checkpoint;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "JsonArrayElement [value=" + this.value + ", index=" + this.index + ", checkpoint=" + this.checkpoint + "]";
+    }
+}
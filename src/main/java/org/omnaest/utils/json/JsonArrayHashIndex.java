@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * On disk hash index from the value of a key field to the byte offset of the element holding it, over a UTF-8 encoded
+ * JSON array file of objects, for point lookups without loading the file.
+ * <p>
+ * The index file holds an open addressing hash table with linear probing: after a small header, one 16 byte slot per
+ * bucket with the 64 bit hash of the key and the offset of the element, or zeros for an empty slot. The table is sized
+ * to at most half full, and memory mapped in segments for reading. Since different keys can share a hash, a lookup
+ * verifies the key of every element it seeks to. For duplicate keys, the first element within the array is found. The
+ * header records the size and the modification time of the array file, so the index is rejected once the array file
+ * has been rewritten.
+ * <p>
+ * Keys are compared by their JSON text as it is, so a numeric {@code "id":1.50} is looked up as {@code "1.50"}, and
+ * not as {@code "1.5"}. Elements without the key field, or with a null or non scalar value in it, are not indexed. Of
+ * duplicate key fields within an element, the first one counts.
+ * <p>
+ * Lookups are thread safe. Has to be closed, which closes the array file.
+ *
+ * @author omnaest
+ */
+public class JsonArrayHashIndex implements Closeable
+{
+    private static final int MAGIC   = 0x4A414849;
+    private static final int VERSION = 2;
+
+    /**
+     * The length of the header up to the bytes of the key field
+     */
+    private static final int FIXED_HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8 + 4;
+
+    private static final int  SLOT_SIZE     = 16;
+    private static final long SEGMENT_SIZE  = 1L << 30;
+    private static final int  SLOTS_PER_SEG = (int) (SEGMENT_SIZE / SLOT_SIZE);
+
+    private final FileChannel  arrayChannel;
+    private final ObjectMapper objectMapper;
+    private final String       keyField;
+    private final long         capacity;
+    private final long         count;
+    private final ByteBuffer[] segments;
+
+    private JsonArrayHashIndex(FileChannel arrayChannel, ObjectMapper objectMapper, String keyField, long capacity, long count, ByteBuffer[] segments)
+    {
+        super();
+        this.arrayChannel = arrayChannel;
+        this.objectMapper = objectMapper;
+        this.keyField = keyField;
+        this.capacity = capacity;
+        this.count = count;
+        this.segments = segments;
+    }
+
+    /**
+     * Builds the index of the given JSON array file over the given key field and writes it into the given index file.
+     * The array is read twice, first to size the table, and then to fill it, without binding any element.
+     *
+     * @param arrayFile
+     * @param indexFile
+     * @param keyField
+     *            the name of a top level field of the array elements
+     * @param objectMapper
+     * @return the number of indexed elements
+     * @throws IOException
+     */
+    public static long build(Path arrayFile, Path indexFile, String keyField, ObjectMapper objectMapper) throws IOException
+    {
+        long arrayFileSize = Files.size(arrayFile);
+        long arrayFileModified = Files.getLastModifiedTime(arrayFile)
+                                      .toMillis();
+        try (FileChannel arrayChannel = FileChannel.open(arrayFile, StandardOpenOption.READ);
+                FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                            StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long keyCount = 0;
+            try (JsonArrayCursor cursor = JsonArrayCursor.open(arrayChannel, 0, 0, objectMapper))
+            {
+                while (cursor.next())
+                {
+                    keyCount += cursor.readFieldText(keyField) != null ? 1 : 0;
+                }
+            }
+
+            long capacity = Long.highestOneBit(Math.max(2, keyCount) * 2 - 1) << 1;
+            ByteBuffer header = createHeader(keyField, capacity, keyCount, arrayFileSize, arrayFileModified);
+            long slotsOffset = header.remaining();
+            indexChannel.write(header, 0);
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((capacity * SLOT_SIZE + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int ii = 0; ii < segments.length; ii++)
+            {
+                long position = slotsOffset + ii * SEGMENT_SIZE;
+                segments[ii] = indexChannel.map(MapMode.READ_WRITE, position, Math.min(SEGMENT_SIZE, capacity * SLOT_SIZE - ii * SEGMENT_SIZE));
+            }
+
+            try (JsonArrayCursor cursor = JsonArrayCursor.open(arrayChannel, 0, 0, objectMapper))
+            {
+                while (cursor.next())
+                {
+                    String key = cursor.readFieldText(keyField);
+                    if (key != null)
+                    {
+                        long hash = hash(key);
+                        long slot = hash & (capacity - 1);
+                        while (getHash(segments, slot) != 0)
+                        {
+                            slot = (slot + 1) & (capacity - 1);
+                        }
+                        ByteBuffer segment = segments[(int) (slot / SLOTS_PER_SEG)];
+                        int position = (int) (slot % SLOTS_PER_SEG) * SLOT_SIZE;
+                        segment.putLong(position, hash);
+                        segment.putLong(position + Long.BYTES, cursor.getElementOffset());
+                    }
+                }
+            }
+
+            for (MappedByteBuffer segment : segments)
+            {
+                segment.force();
+            }
+            return keyCount;
+        }
+    }
+
+    private static ByteBuffer createHeader(String keyField, long capacity, long count, long arrayFileSize, long arrayFileModified)
+    {
+        byte[] keyFieldBytes = keyField.getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_HEADER_SIZE + keyFieldBytes.length;
+
+        // the slots start aligned to their size
+        ByteBuffer header = ByteBuffer.allocate((length + SLOT_SIZE - 1) / SLOT_SIZE * SLOT_SIZE);
+        header.putInt(MAGIC)
+              .putInt(VERSION)
+              .putLong(capacity)
+              .putLong(count)
+              .putLong(arrayFileSize)
+              .putLong(arrayFileModified)
+              .putInt(keyFieldBytes.length)
+              .put(keyFieldBytes)
+              .clear();
+        return header;
+    }
+
+    /**
+     * Opens the index written by {@link #build(Path, Path, String, ObjectMapper)} for the given array file
+     *
+     * @param arrayFile
+     * @param indexFile
+     * @param objectMapper
+     * @return
+     * @throws IOException
+     *             also if the array file has changed since the index has been built
+     */
+    public static JsonArrayHashIndex open(Path arrayFile, Path indexFile, ObjectMapper objectMapper) throws IOException
+    {
+        try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE);
+            indexChannel.read(header, 0);
+            header.flip();
+            if (header.remaining() < FIXED_HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION)
+            {
+                throw new IOException("Not a JSON array hash index file: " + indexFile);
+            }
+            long capacity = header.getLong();
+            long count = header.getLong();
+            long arrayFileSize = header.getLong();
+            long arrayFileModified = header.getLong();
+            if (Files.size(arrayFile) != arrayFileSize || Files.getLastModifiedTime(arrayFile)
+                                                               .toMillis() != arrayFileModified)
+            {
+                throw new IOException("JSON array file has changed since its hash index has been built: " + arrayFile);
+            }
+            ByteBuffer keyFieldBytes = ByteBuffer.allocate(header.getInt());
+            indexChannel.read(keyFieldBytes, FIXED_HEADER_SIZE);
+            String keyField = new String(keyFieldBytes.array(), StandardCharsets.UTF_8);
+            long slotsOffset = createHeader(keyField, capacity, count, arrayFileSize, arrayFileModified).remaining();
+
+            // the mappings stay valid after the channel is closed
+            ByteBuffer[] segments = new ByteBuffer[(int) ((capacity * SLOT_SIZE + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int ii = 0; ii < segments.length; ii++)
+            {
+                long position = slotsOffset + ii * SEGMENT_SIZE;
+                segments[ii] = indexChannel.map(MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, capacity * SLOT_SIZE - ii * SEGMENT_SIZE));
+            }
+
+            FileChannel arrayChannel = FileChannel.open(arrayFile, StandardOpenOption.READ);
+            return new JsonArrayHashIndex(arrayChannel, objectMapper, keyField, capacity, count, segments);
+        }
+    }
+
+    /**
+     * Returns the element with the given key bound to the given type, which is the only element read from the array
+     * file, apart from those of hash collisions
+     *
+     * @param key
+     * @param type
+     * @return
+     * @throws IOException
+     */
+    public <T> Optional<T> get(String key, Class<T> type) throws IOException
+    {
+        long hash = hash(key);
+        long slot = hash & (this.capacity - 1);
+        long slotHash;
+        while ((slotHash = getHash(this.segments, slot)) != 0)
+        {
+            if (slotHash == hash)
+            {
+                ByteBuffer segment = this.segments[(int) (slot / SLOTS_PER_SEG)];
+                long offset = segment.getLong((int) (slot % SLOTS_PER_SEG) * SLOT_SIZE + Long.BYTES);
+                // the key is verified by the very same code that has read it for the build
+                boolean isKey;
+                try (JsonArrayCursor cursor = JsonArrayCursor.open(this.arrayChannel, offset, 0, this.objectMapper))
+                {
+                    isKey = cursor.next() && key.equals(cursor.readFieldText(this.keyField));
+                }
+                if (isKey)
+                {
+                    try (JsonArrayCursor cursor = JsonArrayCursor.open(this.arrayChannel, offset, 0, this.objectMapper))
+                    {
+                        cursor.next();
+                        return Optional.ofNullable(cursor.read(type));
+                    }
+                }
+            }
+            slot = (slot + 1) & (this.capacity - 1);
+        }
+        return Optional.empty();
+    }
+
+    public String getKeyField()
+    {
+        return this.keyField;
+    }
+
+    /**
+     * Returns the number of indexed elements
+     *
+     * @return
+     */
+    public long size()
+    {
+        return this.count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.arrayChannel.close();
+    }
+
+    private static long getHash(ByteBuffer[] segments, long slot)
+    {
+        return segments[(int) (slot / SLOTS_PER_SEG)].getLong((int) (slot % SLOTS_PER_SEG) * SLOT_SIZE);
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the chars of the key with a final avalanche step, never 0, which marks an empty slot
+     *
+     * @param key
+     * @return
+     */
+    private static long hash(String key)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int ii = 0; ii < key.length(); ii++)
+        {
+            hash ^= key.charAt(ii);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sparse index of the byte offsets of the elements of a UTF-8 encoded JSON array file, holding the offset of every
+ * n-th element, so that reading can start close to any element index instead of at the start of the file.
+ * <p>
+ * The index is kept in a compact sidecar file: a header followed by one {@code long} offset per indexed element. The
+ * header records the size and the modification time of the array file, so an index is rejected once the array file
+ * has been rewritten, instead of seeking into the middle of its tokens. Thread safe, as it is immutable once built or
+ * read.
+ *
+ * @see JsonArrayCursor
+ * @author omnaest
+ */
+public class JsonArrayOffsetIndex
+{
+    private static final int MAGIC   = 0x4A414F49;
+    private static final int VERSION = 2;
+
+    private final long   arrayFileSize;
+    private final long   arrayFileModified;
+    private final int    interval;
+    private final long   elementCount;
+    private final long[] offsets;
+
+    private JsonArrayOffsetIndex(long arrayFileSize, long arrayFileModified, int interval, long elementCount, long[] offsets)
+    {
+        super();
+        this.arrayFileSize = arrayFileSize;
+        this.arrayFileModified = arrayFileModified;
+        this.interval = interval;
+        this.elementCount = elementCount;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Builds the index of the given JSON array file by scanning it once, without binding any element
+     *
+     * @param arrayFile
+     * @param interval
+     *            every interval-th element has its offset indexed
+     * @param objectMapper
+     * @return
+     * @throws IOException
+     */
+    public static JsonArrayOffsetIndex build(Path arrayFile, int interval, ObjectMapper objectMapper) throws IOException
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+
+        long arrayFileSize = Files.size(arrayFile);
+        long arrayFileModified = Files.getLastModifiedTime(arrayFile)
+                                      .toMillis();
+        long[] offsets = new long[16];
+        int count = 0;
+        long elementCount = 0;
+        try (JsonArrayCursor cursor = JsonArrayCursor.open(arrayFile, 0, 0, objectMapper))
+        {
+            while (cursor.next())
+            {
+                if (cursor.getElementIndex() % interval == 0)
+                {
+                    if (count == offsets.length)
+                    {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = cursor.getElementOffset();
+                }
+                elementCount++;
+            }
+        }
+        return new JsonArrayOffsetIndex(arrayFileSize, arrayFileModified, interval, elementCount, Arrays.copyOf(offsets, count));
+    }
+
+    /**
+     * Reads an index written by {@link #write(Path)} for the given array file
+     *
+     * @param indexFile
+     * @param arrayFile
+     * @return
+     * @throws IOException
+     *             also if the array file has changed since the index has been built
+     */
+    public static JsonArrayOffsetIndex read(Path indexFile, Path arrayFile) throws IOException
+    {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))
+        {
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION)
+            {
+                throw new IOException("Not a JSON array offset index file: " + indexFile);
+            }
+            long arrayFileSize = inputStream.readLong();
+            long arrayFileModified = inputStream.readLong();
+            int interval = inputStream.readInt();
+            long elementCount = inputStream.readLong();
+            long[] offsets = new long[inputStream.readInt()];
+            for (int ii = 0; ii < offsets.length; ii++)
+            {
+                offsets[ii] = inputStream.readLong();
+            }
+            JsonArrayOffsetIndex index = new JsonArrayOffsetIndex(arrayFileSize, arrayFileModified, interval, elementCount, offsets);
+            index.validate(arrayFile);
+            return index;
+        }
+    }
+
+    /**
+     * Verifies that the given array file is still the one this index has been built from, by its size and
+     * modification time
+     *
+     * @param arrayFile
+     * @throws IOException
+     *             if the array file has changed
+     */
+    public void validate(Path arrayFile) throws IOException
+    {
+        if (Files.size(arrayFile) != this.arrayFileSize || Files.getLastModifiedTime(arrayFile)
+                                                                .toMillis() != this.arrayFileModified)
+        {
+            throw new IOException("JSON array file has changed since its offset index has been built: " + arrayFile);
+        }
+    }
+
+    /**
+     * Writes this index into the given sidecar file
+     *
+     * @param indexFile
+     * @throws IOException
+     */
+    public void write(Path indexFile) throws IOException
+    {
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile))))
+        {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeLong(this.arrayFileSize);
+            outputStream.writeLong(this.arrayFileModified);
+            outputStream.writeInt(this.interval);
+            outputStream.writeLong(this.elementCount);
+            outputStream.writeInt(this.offsets.length);
+            for (long offset : this.offsets)
+            {
+                outputStream.writeLong(offset);
+            }
+        }
+    }
+
+    public int getInterval()
+    {
+        return this.interval;
+    }
+
+    public long getElementCount()
+    {
+        return this.elementCount;
+    }
+
+    /**
+     * Returns the index of the closest indexed element at or before the given element index
+     *
+     * @param elementIndex
+     * @return
+     */
+    public long getIndexedElementIndex(long elementIndex)
+    {
+        return this.offsets.length > 0 ? Math.min(elementIndex / this.interval, this.offsets.length - 1) * this.interval : 0;
+    }
+
+    /**
+     * Returns the byte offset of the element returned by {@link #getIndexedElementIndex(long)}, or 0 for an empty array
+     *
+     * @param elementIndex
+     * @return
+     */
+    public long getIndexedElementOffset(long elementIndex)
+    {
+        return this.offsets.length > 0 ? this.offsets[(int) (this.getIndexedElementIndex(elementIndex) / this.interval)] : 0;
+    }
+}
@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Splits a UTF-8 encoded JSON array file into several shard files, which are JSON arrays again, without binding or
+ * even decoding the elements: only their boundaries are determined by the parser, and their raw bytes are copied into
+ * the shards with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}. Consecutive
+ * elements going into the same shard are copied as one range.
+ * <p>
+ * The shards are distributed over at most as many writer threads as there are processors, each of which owns a fixed
+ * subset of the shards and is fed with their byte ranges through a bounded queue, so the shards are written
+ * concurrently while the array is scanned, without a thread per shard.
+ * <p>
+ * Thread safe, as it is immutable.
+ *
+ * @see #roundRobin()
+ * @see #bySize()
+ * @see #byKeyHash(String)
+ * @author omnaest
+ */
+public class JsonArraySplitter
+{
+    private static final int  QUEUE_CAPACITY = 1024;
+    private static final long END_OF_RANGES  = -1;
+
+    private static final ByteBuffer OPENING_BRACKET = ByteBuffer.wrap(new byte[] { '[' });
+    private static final ByteBuffer CLOSING_BRACKET = ByteBuffer.wrap(new byte[] { ']' });
+    private static final ByteBuffer COMMA           = ByteBuffer.wrap(new byte[] { ',' });
+
+    private final ShardSelector shardSelector;
+
+    private JsonArraySplitter(ShardSelector shardSelector)
+    {
+        super();
+        this.shardSelector = shardSelector;
+    }
+
+    private static interface ShardSelector
+    {
+        /**
+         * Returns the shard of the current element of the given {@link JsonArrayCursor}, which has to be read or
+         * skipped
+         *
+         * @param cursor
+         * @param shardCount
+         * @param fileSize
+         * @return
+         * @throws IOException
+         */
+        public int select(JsonArrayCursor cursor, int shardCount, long fileSize) throws IOException;
+    }
+
+    /**
+     * Returns a {@link JsonArraySplitter} which distributes the elements one by one over the shards in turn
+     *
+     * @return
+     */
+    public static JsonArraySplitter roundRobin()
+    {
+        return new JsonArraySplitter((cursor, shardCount, fileSize) ->
+        {
+            cursor.skip();
+            return (int) (cursor.getElementIndex() % shardCount);
+        });
+    }
+
+    /**
+     * Returns a {@link JsonArraySplitter} which splits the array into consecutive ranges of elements of about the same
+     * size in bytes, one per shard
+     *
+     * @return
+     */
+    public static JsonArraySplitter bySize()
+    {
+        return new JsonArraySplitter((cursor, shardCount, fileSize) ->
+        {
+            cursor.skip();
+            return (int) Math.min(shardCount - 1, (double) cursor.getElementOffset() * shardCount / fileSize);
+        });
+    }
+
+    /**
+     * Returns a {@link JsonArraySplitter} which selects the shard of an element by the hash of the text of the given
+     * top level key field, so that all elements with the same key end up within the same shard. Elements without the
+     * key go into the first shard.
+     *
+     * @param keyField
+     * @return
+     */
+    public static JsonArraySplitter byKeyHash(String keyField)
+    {
+        return new JsonArraySplitter((cursor, shardCount, fileSize) ->
+        {
+            String key = cursor.readFieldText(keyField);
+            if (key == null)
+            {
+                return 0;
+            }
+            long hash = key.hashCode() * 0x9E3779B97F4A7C15L;
+            return (int) Math.floorMod(hash ^ (hash >>> 32), (long) shardCount);
+        });
+    }
+
+    /**
+     * Splits the given array file into the given shard files, which are created or truncated
+     *
+     * @param arrayFile
+     * @param shardFiles
+     * @param objectMapper
+     * @return the number of elements written into each shard
+     * @throws IOException
+     */
+    public long[] split(Path arrayFile, List<Path> shardFiles, ObjectMapper objectMapper) throws IOException
+    {
+        int shardCount = shardFiles.size();
+        if (shardCount < 1)
+        {
+            throw new IllegalArgumentException("At least one shard file is required");
+        }
+
+        long[] elementCounts = new long[shardCount];
+        int writerCount = Math.min(shardCount, Runtime.getRuntime()
+                                                      .availableProcessors());
+        ExecutorService executorService = Executors.newFixedThreadPool(writerCount);
+        try (FileChannel channel = FileChannel.open(arrayFile, StandardOpenOption.READ);
+                JsonArrayCursor cursor = JsonArrayCursor.open(channel, 0, 0, objectMapper))
+        {
+            // the shard ii is written by the writer ii % writerCount, which keeps the ranges of a shard in order
+            List<BlockingQueue<long[]>> queues = new ArrayList<>();
+            List<Future<?>> writers = new ArrayList<>();
+            for (int ii = 0; ii < writerCount; ii++)
+            {
+                BlockingQueue<long[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+                List<Path> writerShardFiles = new ArrayList<>();
+                for (int shard = ii; shard < shardCount; shard += writerCount)
+                {
+                    writerShardFiles.add(shardFiles.get(shard));
+                }
+                queues.add(queue);
+                writers.add(executorService.submit(() -> writeShards(channel, writerShardFiles, writerCount, queue)));
+            }
+
+            long fileSize = channel.size();
+            int rangeShard = -1;
+            long rangeStart = 0;
+            long rangeEnd = 0;
+            while (cursor.next())
+            {
+                long offset = cursor.getElementOffset();
+                int shard = this.shardSelector.select(cursor, shardCount, fileSize);
+                if (shard < 0 || shard >= shardCount)
+                {
+                    throw new IllegalStateException("Invalid shard " + shard + " selected for element " + cursor.getElementIndex());
+                }
+                JsonArrayCheckpoint checkpoint = cursor.getCheckpoint();
+                elementCounts[shard]++;
+
+                if (shard != rangeShard)
+                {
+                    if (rangeShard >= 0)
+                    {
+                        enqueue(queues, writers, rangeShard, new long[] { rangeShard, rangeStart, rangeEnd });
+                    }
+                    rangeShard = shard;
+                    rangeStart = offset;
+                }
+                rangeEnd = checkpoint.getOffset();
+            }
+            if (rangeShard >= 0)
+            {
+                enqueue(queues, writers, rangeShard, new long[] { rangeShard, rangeStart, rangeEnd });
+            }
+
+            for (int ii = 0; ii < writerCount; ii++)
+            {
+                enqueue(queues, writers, ii, new long[] { END_OF_RANGES, END_OF_RANGES, END_OF_RANGES });
+            }
+            for (Future<?> writer : writers)
+            {
+                await(writer);
+            }
+            return elementCounts;
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void enqueue(List<BlockingQueue<long[]>> queues, List<Future<?>> writers, int shard, long[] range) throws IOException
+    {
+        BlockingQueue<long[]> queue = queues.get(shard % queues.size());
+        Future<?> writer = writers.get(shard % writers.size());
+        try
+        {
+            while (!queue.offer(range, 100, TimeUnit.MILLISECONDS))
+            {
+                if (writer.isDone())
+                {
+                    // the writer failed, as it only ends after the end of the ranges
+                    await(writer);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IOException("Interrupted while splitting JSON array", e);
+        }
+    }
+
+    private static void await(Future<?> writer) throws IOException
+    {
+        try
+        {
+            writer.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IOException("Interrupted while splitting JSON array", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Writes the given shard files, which are every writerCount-th one, from the ranges of the given queue, each of
+     * which holds the shard index and the start and end offset
+     *
+     * @param channel
+     * @param shardFiles
+     * @param writerCount
+     * @param queue
+     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static Void writeShards(FileChannel channel, List<Path> shardFiles, int writerCount, BlockingQueue<long[]> queue)
+            throws IOException, InterruptedException
+    {
+        FileChannel[] shardChannels = new FileChannel[shardFiles.size()];
+        try
+        {
+            boolean[] empty = new boolean[shardChannels.length];
+            for (int ii = 0; ii < shardChannels.length; ii++)
+            {
+                shardChannels[ii] = FileChannel.open(shardFiles.get(ii), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                     StandardOpenOption.WRITE);
+                shardChannels[ii].write(OPENING_BRACKET.duplicate());
+                empty[ii] = true;
+            }
+
+            long[] range;
+            while ((range = queue.take())[0] != END_OF_RANGES)
+            {
+                int shardIndex = (int) range[0] / writerCount;
+                FileChannel shardChannel = shardChannels[shardIndex];
+                if (!empty[shardIndex])
+                {
+                    shardChannel.write(COMMA.duplicate());
+                }
+                empty[shardIndex] = false;
+                for (long position = range[1]; position < range[2];)
+                {
+                    position += channel.transferTo(position, range[2] - position, shardChannel);
+                }
+            }
+
+            for (FileChannel shardChannel : shardChannels)
+            {
+                shardChannel.write(CLOSING_BRACKET.duplicate());
+            }
+        }
+        finally
+        {
+            closeAll(shardChannels);
+        }
+        return null;
+    }
+
+    private static void closeAll(FileChannel[] channels) throws IOException
+    {
+        IOException exception = null;
+        for (FileChannel channel : channels)
+        {
+            try
+            {
+                if (channel != null)
+                {
+                    channel.close();
+                }
+            }
+            catch (IOException e)
+            {
+                if (exception == null)
+                {
+                    exception = e;
+                }
+                else
+                {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null)
+        {
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotation;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedConstructor;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.util.ClassUtil;
+
+/**
+ * Binds between {@link Map}s and beans by walking the {@link Map} and calling the property accessors directly,
+ * instead of going through {@link ObjectMapper#convertValue(Object, Class)}, which writes the source into a
+ * {@code TokenBuffer} and then parses that buffer again.
+ * <p>
+ * The accessors are taken from the very bean introspection the {@link ObjectMapper} itself uses, and resolved once
+ * per {@link Class} into a cached plan. Only plain beans get such a plan: a concrete, static class with a default
+ * constructor whose class and properties carry no Jackson annotation at all. Everything else - annotated classes,
+ * creator based or polymorphic types, JDK types, containers - as well as any {@link Map} with a key that is not a
+ * known property, keeps going through {@link ObjectMapper#convertValue(Object, Class)}, so the result and the
+ * failure behavior stay the ones of Jackson.
+ * <p>
+ * Property values follow the same rule: the common scalar cases are assigned directly, nested plain beans recurse,
+ * and every other value is converted on its own by the {@link ObjectMapper}.
+ * <p>
+ * Note: assumes an {@link ObjectMapper} with the default configuration, like the shared one of
+ * {@link org.omnaest.utils.JsonUtils}. Instances are thread safe.
+ *
+ * @author omnaest
+ */
+public class JsonBeanBinder
+{
+    private final ObjectMapper objectMapper;
+
+    private final Map<Class<?>, Optional<ReadPlan>>  readPlans  = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<WritePlan>> writePlans = new ConcurrentHashMap<>();
+
+    public JsonBeanBinder(ObjectMapper objectMapper)
+    {
+        super();
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns an instance of the given type with the properties of the given {@link Map}
+     *
+     * @param map
+     * @param type
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T toObject(Map<?, ?> map, Class<T> type)
+    {
+        if (map == null)
+        {
+            return this.objectMapper.convertValue(map, type);
+        }
+
+        ReadPlan plan = this.readPlans.computeIfAbsent(type, this::createReadPlan)
+                                      .orElse(null);
+        if (plan == null || !plan.accepts(map))
+        {
+            return this.objectMapper.convertValue(map, type);
+        }
+
+        Object instance = plan.newInstance();
+        for (Map.Entry<?, ?> entry : map.entrySet())
+        {
+            plan.properties.get(entry.getKey())
+                           .assign(instance, entry.getValue());
+        }
+        return (T) instance;
+    }
+
+    /**
+     * Returns a {@link LinkedHashMap} with the properties of the given bean, in the order Jackson would serialize them
+     *
+     * @param object
+     * @return
+     * @throws IllegalArgumentException
+     *             with a {@link JsonMappingException} as cause, if the beans reference each other in a cycle
+     */
+    public Map<String, Object> toMap(Object object)
+    {
+        return this.toMap(object, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * @param object
+     * @param visitedBeans
+     *            the beans on the path to the given object, for the detection of cycles
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toMap(Object object, Set<Object> visitedBeans)
+    {
+        WritePlan plan = object != null ? this.writePlans.computeIfAbsent(object.getClass(), this::createWritePlan)
+                                                         .orElse(null)
+                : null;
+        if (plan == null)
+        {
+            return this.objectMapper.convertValue(object, Map.class);
+        }
+
+        if (!visitedBeans.add(object))
+        {
+            // the same failure as the one of Jackson's serializer running into a cycle
+            JsonMappingException exception = new JsonMappingException(null, "Cycle in bean graph at " + object.getClass()
+                                                                                                          .getName());
+            throw new IllegalArgumentException(exception.getMessage(), exception);
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (WriteProperty property : plan.properties)
+        {
+            map.put(property.name, this.toMapValue(property.accessor.getValue(object), visitedBeans));
+        }
+        visitedBeans.remove(object);
+        return map;
+    }
+
+    private Object toMapValue(Object value, Set<Object> visitedBeans)
+    {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Double)
+        {
+            return value;
+        }
+
+        boolean isPlainBean = this.writePlans.computeIfAbsent(value.getClass(), this::createWritePlan)
+                                             .isPresent();
+        return isPlainBean ? this.toMap(value, visitedBeans) : this.objectMapper.convertValue(value, Object.class);
+    }
+
+    private Optional<ReadPlan> createReadPlan(Class<?> type)
+    {
+        JavaType javaType = this.objectMapper.constructType(type);
+        if (!isPlainBeanType(javaType))
+        {
+            return Optional.empty();
+        }
+
+        BeanDescription beanDescription = this.objectMapper.getDeserializationConfig()
+                                                           .introspect(javaType);
+        AnnotatedConstructor defaultConstructor = beanDescription.findDefaultConstructor();
+        if (beanDescription.hasKnownClassAnnotations() || defaultConstructor == null || hasJacksonAnnotation(defaultConstructor))
+        {
+            return Optional.empty();
+        }
+
+        Map<String, ReadProperty> properties = new HashMap<>();
+        for (BeanPropertyDefinition propertyDefinition : beanDescription.findProperties())
+        {
+            AnnotatedMember mutator = propertyDefinition.hasSetter() ? propertyDefinition.getSetter() : propertyDefinition.getField();
+            if (mutator == null || hasJacksonAnnotation(propertyDefinition))
+            {
+                return Optional.empty();
+            }
+            mutator.fixAccess(true);
+            properties.put(propertyDefinition.getName(), new ReadProperty(mutator, propertyDefinition.getPrimaryType()));
+        }
+        if (properties.isEmpty())
+        {
+            return Optional.empty();
+        }
+
+        defaultConstructor.fixAccess(true);
+        return Optional.of(new ReadPlan(defaultConstructor, properties));
+    }
+
+    private Optional<WritePlan> createWritePlan(Class<?> type)
+    {
+        JavaType javaType = this.objectMapper.constructType(type);
+        if (!isPlainBeanType(javaType))
+        {
+            return Optional.empty();
+        }
+
+        BeanDescription beanDescription = this.objectMapper.getSerializationConfig()
+                                                           .introspect(javaType);
+        if (beanDescription.hasKnownClassAnnotations())
+        {
+            return Optional.empty();
+        }
+
+        List<WriteProperty> properties = new ArrayList<>();
+        for (BeanPropertyDefinition propertyDefinition : beanDescription.findProperties())
+        {
+            if (hasJacksonAnnotation(propertyDefinition))
+            {
+                return Optional.empty();
+            }
+
+            AnnotatedMember accessor = propertyDefinition.getAccessor();
+            if (accessor != null)
+            {
+                accessor.fixAccess(true);
+                properties.add(new WriteProperty(propertyDefinition.getName(), accessor));
+            }
+        }
+
+        // Jackson refuses to serialize beans without any property at all, which the fallback keeps as it is
+        return properties.isEmpty() ? Optional.empty() : Optional.of(new WritePlan(properties));
+    }
+
+    private static boolean isPlainBeanType(JavaType javaType)
+    {
+        Class<?> rawClass = javaType.getRawClass();
+        return javaType.isConcrete() && !javaType.isContainerType() && !javaType.isReferenceType() && !javaType.isEnumType()
+                && !javaType.isPrimitive() && !javaType.isArrayType() && !javaType.hasGenericTypes() && !ClassUtil.isJDKClass(rawClass)
+                && !JsonNode.class.isAssignableFrom(rawClass) && !JsonSerializable.class.isAssignableFrom(rawClass)
+                && (rawClass.getEnclosingClass() == null || Modifier.isStatic(rawClass.getModifiers()));
+    }
+
+    private static boolean hasJacksonAnnotation(BeanPropertyDefinition propertyDefinition)
+    {
+        return hasJacksonAnnotation(propertyDefinition.getGetter()) || hasJacksonAnnotation(propertyDefinition.getSetter())
+                || hasJacksonAnnotation(propertyDefinition.getField()) || propertyDefinition.hasConstructorParameter();
+    }
+
+    private static boolean hasJacksonAnnotation(Annotated annotated)
+    {
+        if (annotated != null)
+        {
+            for (Annotation annotation : annotated.getAnnotated()
+                                                  .getAnnotations())
+            {
+                if (annotation.annotationType()
+                              .isAnnotationPresent(JacksonAnnotation.class))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private class ReadPlan
+    {
+        private final AnnotatedConstructor      defaultConstructor;
+        private final Map<String, ReadProperty> properties;
+
+        private ReadPlan(AnnotatedConstructor defaultConstructor, Map<String, ReadProperty> properties)
+        {
+            super();
+            this.defaultConstructor = defaultConstructor;
+            this.properties = properties;
+        }
+
+        private boolean accepts(Map<?, ?> map)
+        {
+            return this.properties.keySet()
+                                  .containsAll(map.keySet());
+        }
+
+        private Object newInstance()
+        {
+            try
+            {
+                return this.defaultConstructor.call();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    private class ReadProperty
+    {
+        private final AnnotatedMember mutator;
+        private final JavaType        type;
+
+        private ReadProperty(AnnotatedMember mutator, JavaType type)
+        {
+            super();
+            this.mutator = mutator;
+            this.type = type;
+        }
+
+        private void assign(Object instance, Object value)
+        {
+            if (value == null && this.type.isPrimitive())
+            {
+                // same as Jackson with FAIL_ON_NULL_FOR_PRIMITIVES disabled: the primitive default is assigned
+                this.mutator.setValue(instance, ClassUtil.defaultValue(this.type.getRawClass()));
+                return;
+            }
+            this.mutator.setValue(instance, this.toPropertyValue(value));
+        }
+
+        private Object toPropertyValue(Object value)
+        {
+            Class<?> rawClass = this.type.getRawClass();
+            if (value == null)
+            {
+                return null;
+            }
+            else if (rawClass == String.class && value instanceof String)
+            {
+                return value;
+            }
+            else if ((rawClass == boolean.class || rawClass == Boolean.class) && value instanceof Boolean)
+            {
+                return value;
+            }
+            else if ((rawClass == int.class || rawClass == Integer.class) && value instanceof Integer)
+            {
+                return value;
+            }
+            else if ((rawClass == long.class || rawClass == Long.class) && (value instanceof Integer || value instanceof Long))
+            {
+                return ((Number) value).longValue();
+            }
+            else if ((rawClass == double.class || rawClass == Double.class)
+                    && (value instanceof Integer || value instanceof Long || value instanceof Double))
+            {
+                return ((Number) value).doubleValue();
+            }
+            else if (value instanceof Map)
+            {
+                boolean isPlainBean = JsonBeanBinder.this.readPlans.computeIfAbsent(rawClass, JsonBeanBinder.this::createReadPlan)
+                                                                   .isPresent();
+                if (isPlainBean)
+                {
+                    return JsonBeanBinder.this.toObject((Map<?, ?>) value, rawClass);
+                }
+            }
+            return JsonBeanBinder.this.objectMapper.convertValue(value, this.type);
+        }
+    }
+
+    private static class WritePlan
+    {
+        private final List<WriteProperty> properties;
+
+        private WritePlan(List<WriteProperty> properties)
+        {
+            super();
+            this.properties = properties;
+        }
+    }
+
+    private static class WriteProperty
+    {
+        private final String          name;
+        private final AnnotatedMember accessor;
+
+        private WriteProperty(String name, AnnotatedMember accessor)
+        {
+            super();
+            this.name = name;
+            this.accessor = accessor;
+        }
+    }
+}
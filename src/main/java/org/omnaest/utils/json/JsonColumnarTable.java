@@ -0,0 +1,593 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+/**
+ * Read-only columnar representation of a JSON array of flat records, like
+ * {@code [{"id":1,"name":"a"},{"id":2,"name":null}]}, as a compact alternative to reading such an array into one
+ * bean or {@link Map} per record.
+ * <p>
+ * Every field becomes a {@link Column} holding the values of all rows: integral numbers in a {@code long} column,
+ * other numbers in a {@code double} column, booleans and nulls in bitsets, and strings dictionary encoded as
+ * {@code int} codes into the distinct values of the column. The {@code long}, {@code double} and code columns can be
+ * moved off heap into direct {@link ByteBuffer}s.
+ * <p>
+ * Fields absent from a record read as null, and are serialized as null. Values have to be scalars, and the values of a
+ * field have to be of one type, except for integral numbers mixed with other numbers, which make a {@code double}
+ * column.
+ * <p>
+ * Serializes back into the JSON array of records, as it is {@link JsonSerializable}. Thread safe, as it is immutable
+ * once read.
+ *
+ * @see #read(JsonParser, boolean)
+ * @author omnaest
+ */
+public class JsonColumnarTable implements JsonSerializable
+{
+    public static enum ColumnType
+    {
+        LONG, DOUBLE, BOOLEAN, STRING
+    }
+
+    private final int                 rowCount;
+    private final Map<String, Column> columns;
+
+    private JsonColumnarTable(int rowCount, Map<String, Column> columns)
+    {
+        super();
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    /**
+     * Reads the JSON array of records the given {@link JsonParser} is positioned at, or whose start is the next token.
+     * The parser is neither advanced beyond that array nor closed.
+     *
+     * @param jsonParser
+     * @param offHeap
+     *            if true, the {@code long}, {@code double} and string code columns are held in direct
+     *            {@link ByteBuffer}s. They are still collected on the heap while reading, and copied once the array
+     *            has been read.
+     * @return null, if the parser has no further value
+     * @throws IOException
+     *             also if the content is no array of flat records
+     */
+    public static JsonColumnarTable read(JsonParser jsonParser, boolean offHeap) throws IOException
+    {
+        JsonToken token = jsonParser.hasCurrentToken() ? jsonParser.currentToken() : jsonParser.nextToken();
+        if (token == null)
+        {
+            return null;
+        }
+        if (token != JsonToken.START_ARRAY)
+        {
+            throw new JsonParseException(jsonParser, "Expected a JSON array of records but got " + token);
+        }
+
+        Map<String, ColumnBuilder> builders = new LinkedHashMap<>();
+        int rowCount = 0;
+        while ((token = jsonParser.nextToken()) != JsonToken.END_ARRAY)
+        {
+            if (token != JsonToken.START_OBJECT)
+            {
+                throw new JsonParseException(jsonParser, "Expected a record object within the JSON array but got " + token);
+            }
+            while ((token = jsonParser.nextToken()) == JsonToken.FIELD_NAME)
+            {
+                String fieldName = jsonParser.currentName();
+                token = jsonParser.nextToken();
+                builders.computeIfAbsent(fieldName, name -> new ColumnBuilder(name))
+                        .add(jsonParser, token, rowCount);
+            }
+            if (token != JsonToken.END_OBJECT)
+            {
+                throw new JsonParseException(jsonParser, "Unexpected end of input within record");
+            }
+            rowCount++;
+        }
+
+        Map<String, Column> columns = new LinkedHashMap<>();
+        for (ColumnBuilder builder : builders.values())
+        {
+            columns.put(builder.name, builder.build(rowCount, offHeap));
+        }
+        return new JsonColumnarTable(rowCount, Collections.unmodifiableMap(columns));
+    }
+
+    public int getRowCount()
+    {
+        return this.rowCount;
+    }
+
+    /**
+     * Returns the column names in the order of their first occurrence
+     *
+     * @return
+     */
+    public List<String> getColumnNames()
+    {
+        return new ArrayList<>(this.columns.keySet());
+    }
+
+    /**
+     * Returns the {@link Column} of the given field name
+     *
+     * @param name
+     * @return null, if no record has such a field
+     */
+    public Column getColumn(String name)
+    {
+        return this.columns.get(name);
+    }
+
+    public Row getRow(int row)
+    {
+        if (row < 0 || row >= this.rowCount)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + this.rowCount);
+        }
+        return new Row(row);
+    }
+
+    public Stream<Row> rows()
+    {
+        return IntStream.range(0, this.rowCount)
+                        .mapToObj(Row::new);
+    }
+
+    @Override
+    public void serialize(JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException
+    {
+        jsonGenerator.writeStartArray(this, this.rowCount);
+        for (int row = 0; row < this.rowCount; row++)
+        {
+            jsonGenerator.writeStartObject();
+            for (Column column : this.columns.values())
+            {
+                jsonGenerator.writeFieldName(column.name);
+                column.write(jsonGenerator, row);
+            }
+            jsonGenerator.writeEndObject();
+        }
+        jsonGenerator.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator jsonGenerator, SerializerProvider serializerProvider, TypeSerializer typeSerializer)
+            throws IOException
+    {
+        WritableTypeId typeId = typeSerializer.writeTypePrefix(jsonGenerator, typeSerializer.typeId(this, JsonToken.START_ARRAY));
+        this.serialize(jsonGenerator, serializerProvider);
+        typeSerializer.writeTypeSuffix(jsonGenerator, typeId);
+    }
+
+    /**
+     * View of a single record of a {@link JsonColumnarTable}
+     *
+     * @author omnaest
+     */
+    public class Row
+    {
+        private final int row;
+
+        private Row(int row)
+        {
+            super();
+            this.row = row;
+        }
+
+        public int getIndex()
+        {
+            return this.row;
+        }
+
+        /**
+         * Returns the value of the given field as {@link Long}, {@link Double}, {@link Boolean} or {@link String}
+         *
+         * @param name
+         * @return null, if the value is null or there is no such column
+         */
+        public Object get(String name)
+        {
+            Column column = JsonColumnarTable.this.columns.get(name);
+            return column != null ? column.get(this.row) : null;
+        }
+
+        public Map<String, Object> toMap()
+        {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Column column : JsonColumnarTable.this.columns.values())
+            {
+                map.put(column.name, column.get(this.row));
+            }
+            return map;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Row [" + this.row + "]" + this.toMap();
+        }
+    }
+
+    /**
+     * The values of a single field across all records of a {@link JsonColumnarTable}. The typed getters return the
+     * primitive default for null values, so {@link #isNull(int)} has to be checked where nulls can occur.
+     *
+     * @author omnaest
+     */
+    public static class Column
+    {
+        private final String     name;
+        private final ColumnType type;
+        private final int        rowCount;
+        private final BitSet     nulls;
+
+        private final LongBuffer   longs;
+        private final DoubleBuffer doubles;
+        private final BitSet       booleans;
+        private final IntBuffer    codes;
+        private final String[]     dictionary;
+
+        private Column(String name, ColumnType type, int rowCount, BitSet nulls, LongBuffer longs, DoubleBuffer doubles, BitSet booleans,
+                       IntBuffer codes, String[] dictionary)
+        {
+            super();
+            this.name = name;
+            this.type = type;
+            this.rowCount = rowCount;
+            this.nulls = nulls;
+            this.longs = longs;
+            this.doubles = doubles;
+            this.booleans = booleans;
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        /**
+         * Returns the {@link ColumnType}, which is {@link ColumnType#STRING} for a column with only null values
+         *
+         * @return
+         */
+        public ColumnType getType()
+        {
+            return this.type;
+        }
+
+        public int size()
+        {
+            return this.rowCount;
+        }
+
+        public boolean isNull(int row)
+        {
+            this.checkRow(row);
+            return this.nulls.get(row);
+        }
+
+        public long getLong(int row)
+        {
+            this.checkRow(row);
+            return this.type == ColumnType.DOUBLE ? (long) this.doubles.get(row) : this.longs.get(this.checkType(ColumnType.LONG, row));
+        }
+
+        public double getDouble(int row)
+        {
+            this.checkRow(row);
+            return this.type == ColumnType.LONG ? this.longs.get(row) : this.doubles.get(this.checkType(ColumnType.DOUBLE, row));
+        }
+
+        public boolean getBoolean(int row)
+        {
+            this.checkRow(row);
+            return this.booleans.get(this.checkType(ColumnType.BOOLEAN, row));
+        }
+
+        /**
+         * Returns the string value
+         *
+         * @param row
+         * @return null for null values
+         */
+        public String getString(int row)
+        {
+            int code = this.getCode(row);
+            return code >= 0 ? this.dictionary[code] : null;
+        }
+
+        /**
+         * Returns the code of the string value, which is its index within {@link #getDictionary()}
+         *
+         * @param row
+         * @return -1 for null values
+         */
+        public int getCode(int row)
+        {
+            this.checkRow(row);
+            return this.codes.get(this.checkType(ColumnType.STRING, row));
+        }
+
+        /**
+         * Returns the distinct string values of a {@link ColumnType#STRING} column, in the order of their first
+         * occurrence
+         *
+         * @return
+         */
+        public List<String> getDictionary()
+        {
+            this.checkType(ColumnType.STRING, 0);
+            return Collections.unmodifiableList(Arrays.asList(this.dictionary));
+        }
+
+        /**
+         * Returns the value as {@link Long}, {@link Double}, {@link Boolean} or {@link String}
+         *
+         * @param row
+         * @return
+         */
+        public Object get(int row)
+        {
+            if (this.isNull(row))
+            {
+                return null;
+            }
+            switch (this.type)
+            {
+                case LONG:
+                    return this.longs.get(row);
+                case DOUBLE:
+                    return this.doubles.get(row);
+                case BOOLEAN:
+                    return this.booleans.get(row);
+                default:
+                    return this.dictionary[this.codes.get(row)];
+            }
+        }
+
+        private void write(JsonGenerator jsonGenerator, int row) throws IOException
+        {
+            if (this.nulls.get(row))
+            {
+                jsonGenerator.writeNull();
+                return;
+            }
+            switch (this.type)
+            {
+                case LONG:
+                    jsonGenerator.writeNumber(this.longs.get(row));
+                    break;
+                case DOUBLE:
+                    jsonGenerator.writeNumber(this.doubles.get(row));
+                    break;
+                case BOOLEAN:
+                    jsonGenerator.writeBoolean(this.booleans.get(row));
+                    break;
+                default:
+                    jsonGenerator.writeString(this.dictionary[this.codes.get(row)]);
+            }
+        }
+
+        private void checkRow(int row)
+        {
+            if (row < 0 || row >= this.rowCount)
+            {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + this.rowCount);
+            }
+        }
+
+        private int checkType(ColumnType type, int row)
+        {
+            if (this.type != type)
+            {
+                throw new IllegalStateException("Column " + this.name + " is of type " + this.type + " not " + type);
+            }
+            return row;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Column [name=" + this.name + ", type=" + this.type + ", size=" + this.rowCount + "]";
+        }
+    }
+
+    /**
+     * Collects the values of one column in growable primitive arrays while reading
+     *
+     * @author omnaest
+     */
+    private static class ColumnBuilder
+    {
+        private final String name;
+
+        private final BitSet               nulls      = new BitSet();
+        private final BitSet               booleans   = new BitSet();
+        private final Map<String, Integer> codes      = new HashMap<>();
+        private final List<String>         dictionary = new ArrayList<>();
+
+        private ColumnType type;
+
+        /**
+         * Values for {@link ColumnType#LONG}, for {@link ColumnType#DOUBLE} as raw bits, and string codes
+         */
+        private long[] values = new long[16];
+
+        /**
+         * The number of rows added so far, which lags behind the row count of the table for records without this field
+         */
+        private int size = 0;
+
+        private ColumnBuilder(String name)
+        {
+            super();
+            this.name = name;
+        }
+
+        private void add(JsonParser jsonParser, JsonToken token, int row) throws IOException
+        {
+            if (row < this.size)
+            {
+                throw new JsonParseException(jsonParser, "Duplicate field within record: " + this.name);
+            }
+            this.nulls.set(this.size, row);
+            this.ensureCapacity(row + 1);
+            this.size = row + 1;
+
+            switch (token)
+            {
+                case VALUE_NULL:
+                    this.nulls.set(row);
+                    break;
+                case VALUE_NUMBER_INT:
+                    if (this.type == ColumnType.DOUBLE)
+                    {
+                        this.values[row] = Double.doubleToRawLongBits(jsonParser.getDoubleValue());
+                    }
+                    else
+                    {
+                        this.ensureType(jsonParser, ColumnType.LONG);
+                        this.values[row] = jsonParser.getLongValue();
+                    }
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    if (this.type == ColumnType.LONG)
+                    {
+                        this.promoteToDouble();
+                    }
+                    this.ensureType(jsonParser, ColumnType.DOUBLE);
+                    this.values[row] = Double.doubleToRawLongBits(jsonParser.getDoubleValue());
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    this.ensureType(jsonParser, ColumnType.BOOLEAN);
+                    this.booleans.set(row, token == JsonToken.VALUE_TRUE);
+                    break;
+                case VALUE_STRING:
+                    this.ensureType(jsonParser, ColumnType.STRING);
+                    String text = jsonParser.getText();
+                    this.values[row] = this.codes.computeIfAbsent(text, value ->
+                    {
+                        this.dictionary.add(value);
+                        return this.dictionary.size() - 1;
+                    });
+                    break;
+                default:
+                    throw new JsonParseException(jsonParser, "Expected a scalar value for field " + this.name + " but got " + token);
+            }
+        }
+
+        private void ensureType(JsonParser jsonParser, ColumnType type) throws JsonParseException
+        {
+            if (this.type == null)
+            {
+                this.type = type;
+            }
+            else if (this.type != type)
+            {
+                throw new JsonParseException(jsonParser, "Field " + this.name + " has values of type " + this.type + " and " + type);
+            }
+        }
+
+        private void promoteToDouble()
+        {
+            for (int ii = 0; ii < this.size; ii++)
+            {
+                this.values[ii] = Double.doubleToRawLongBits(this.values[ii]);
+            }
+            this.type = ColumnType.DOUBLE;
+        }
+
+        private void ensureCapacity(int capacity)
+        {
+            if (capacity > this.values.length)
+            {
+                this.values = Arrays.copyOf(this.values, Math.max(capacity, this.values.length * 2));
+            }
+        }
+
+        private Column build(int rowCount, boolean offHeap)
+        {
+            this.nulls.set(this.size, rowCount);
+            ColumnType type = this.type != null ? this.type : ColumnType.STRING;
+
+            LongBuffer longs = null;
+            DoubleBuffer doubles = null;
+            IntBuffer codes = null;
+            if (type == ColumnType.LONG)
+            {
+                longs = offHeap ? allocateDirect(rowCount, Long.BYTES).asLongBuffer() : LongBuffer.allocate(rowCount);
+                longs.put(this.values, 0, this.size);
+            }
+            else if (type == ColumnType.DOUBLE)
+            {
+                doubles = offHeap ? allocateDirect(rowCount, Double.BYTES).asDoubleBuffer() : DoubleBuffer.allocate(rowCount);
+                for (int ii = 0; ii < this.size; ii++)
+                {
+                    doubles.put(Double.longBitsToDouble(this.values[ii]));
+                }
+            }
+            else if (type == ColumnType.STRING)
+            {
+                codes = offHeap ? allocateDirect(rowCount, Integer.BYTES).asIntBuffer() : IntBuffer.allocate(rowCount);
+                for (int ii = 0; ii < rowCount; ii++)
+                {
+                    codes.put(this.nulls.get(ii) ? -1 : (int) this.values[ii]);
+                }
+            }
+
+            // the absolute getters of the buffers are used, so their position does not matter
+            return new Column(this.name, type, rowCount, this.nulls, longs, doubles, this.booleans, codes, this.dictionary.toArray(new String[0]));
+        }
+
+        private static ByteBuffer allocateDirect(int count, int bytes)
+        {
+            return ByteBuffer.allocateDirect(Math.multiplyExact(count, bytes))
+                             .order(ByteOrder.nativeOrder());
+        }
+    }
+}
@@ -0,0 +1,697 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Read-only JSON tree, as a compact alternative to a {@link JsonNode} tree for documents that are kept around for
+ * lookups.
+ * <p>
+ * Instead of one object per node, with a {@link java.util.LinkedHashMap} per {@link ObjectNode}, all nodes live in a
+ * few flat arrays: one type byte and one primitive {@code long} payload per node, and flat index arrays holding the
+ * children of each container contiguously. Field names are ids into a {@link JsonKeyDictionary}, which can be shared
+ * across trees, and string values are deduplicated within a tree.
+ * <p>
+ * {@link Node}s are lightweight views pointing into those arrays. Thread safe, as it is immutable once read.
+ *
+ * @see #read(JsonParser, JsonKeyDictionary)
+ * @author omnaest
+ */
+public class JsonCompactTree
+{
+    private static final byte TYPE_OBJECT      = 0;
+    private static final byte TYPE_ARRAY       = 1;
+    private static final byte TYPE_STRING      = 2;
+    private static final byte TYPE_INT         = 3;
+    private static final byte TYPE_LONG        = 4;
+    private static final byte TYPE_DOUBLE      = 5;
+    private static final byte TYPE_BIG_INTEGER = 6;
+    private static final byte TYPE_BIG_DECIMAL = 7;
+    private static final byte TYPE_TRUE        = 8;
+    private static final byte TYPE_FALSE       = 9;
+    private static final byte TYPE_NULL        = 10;
+
+    private final JsonKeyDictionary keyDictionary;
+
+    /**
+     * Per node: its type
+     */
+    private final byte[] types;
+
+    /**
+     * Per node: the value for numbers and booleans, the index into {@link #strings} for strings and big numbers, and
+     * offset (high int) and count (low int) of the children within {@link #children} for containers
+     */
+    private final long[] payloads;
+
+    /**
+     * Node indexes of the children of all containers, contiguous per container
+     */
+    private final int[] children;
+
+    /**
+     * The {@link JsonKeyDictionary} id of the field name belonging to the child at the same position in
+     * {@link #children}, or -1 for array elements
+     */
+    private final int[] childKeys;
+
+    private final String[] strings;
+
+    private JsonCompactTree(JsonKeyDictionary keyDictionary, byte[] types, long[] payloads, int[] children, int[] childKeys, String[] strings)
+    {
+        super();
+        this.keyDictionary = keyDictionary;
+        this.types = types;
+        this.payloads = payloads;
+        this.children = children;
+        this.childKeys = childKeys;
+        this.strings = strings;
+    }
+
+    /**
+     * Reads the next value from the given {@link JsonParser} into a {@link JsonCompactTree}. The parser is neither
+     * advanced beyond that value nor closed.
+     *
+     * @param jsonParser
+     * @param keyDictionary
+     *            the {@link JsonKeyDictionary} to intern the field names with
+     * @return null, if the parser has no further value
+     * @throws IOException
+     */
+    public static JsonCompactTree read(JsonParser jsonParser, JsonKeyDictionary keyDictionary) throws IOException
+    {
+        JsonToken token = jsonParser.hasCurrentToken() ? jsonParser.currentToken() : jsonParser.nextToken();
+        if (token == null)
+        {
+            return null;
+        }
+        return new Builder(keyDictionary).build(jsonParser, token);
+    }
+
+    public JsonKeyDictionary getKeyDictionary()
+    {
+        return this.keyDictionary;
+    }
+
+    /**
+     * Returns the number of nodes of this tree
+     *
+     * @return
+     */
+    public int getNodeCount()
+    {
+        return this.types.length;
+    }
+
+    public Node root()
+    {
+        return new Node(0);
+    }
+
+    /**
+     * @see Node#at(String)
+     * @param jsonPointer
+     * @return
+     */
+    public Optional<Node> at(String jsonPointer)
+    {
+        return this.root()
+                   .at(jsonPointer);
+    }
+
+    /**
+     * @see Node#toJsonNode()
+     * @return
+     */
+    public JsonNode toJsonNode()
+    {
+        return this.root()
+                   .toJsonNode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.toJsonNode()
+                   .toString();
+    }
+
+    /**
+     * View on a single node of a {@link JsonCompactTree}
+     *
+     * @author omnaest
+     */
+    public class Node
+    {
+        private final int index;
+
+        private Node(int index)
+        {
+            super();
+            this.index = index;
+        }
+
+        public JsonNodeType getNodeType()
+        {
+            switch (this.type())
+            {
+                case TYPE_OBJECT:
+                    return JsonNodeType.OBJECT;
+                case TYPE_ARRAY:
+                    return JsonNodeType.ARRAY;
+                case TYPE_STRING:
+                    return JsonNodeType.STRING;
+                case TYPE_TRUE:
+                case TYPE_FALSE:
+                    return JsonNodeType.BOOLEAN;
+                case TYPE_NULL:
+                    return JsonNodeType.NULL;
+                default:
+                    return JsonNodeType.NUMBER;
+            }
+        }
+
+        public boolean isObject()
+        {
+            return this.type() == TYPE_OBJECT;
+        }
+
+        public boolean isArray()
+        {
+            return this.type() == TYPE_ARRAY;
+        }
+
+        public boolean isContainer()
+        {
+            return this.isObject() || this.isArray();
+        }
+
+        public boolean isNull()
+        {
+            return this.type() == TYPE_NULL;
+        }
+
+        /**
+         * Returns the number of fields of an object or elements of an array, otherwise 0
+         *
+         * @return
+         */
+        public int size()
+        {
+            return this.isContainer() ? (int) JsonCompactTree.this.payloads[this.index] : 0;
+        }
+
+        /**
+         * Returns the value of the field with the given name, if this is an object that has such a field. For
+         * duplicate field names the last one wins, as for {@link JsonNode}s.
+         *
+         * @param fieldName
+         * @return
+         */
+        public Optional<Node> get(String fieldName)
+        {
+            if (this.isObject())
+            {
+                int keyId = JsonCompactTree.this.keyDictionary.indexOf(fieldName);
+                if (keyId >= 0)
+                {
+                    int offset = this.childOffset();
+                    for (int ii = offset + this.size() - 1; ii >= offset; ii--)
+                    {
+                        if (JsonCompactTree.this.childKeys[ii] == keyId)
+                        {
+                            return Optional.of(new Node(JsonCompactTree.this.children[ii]));
+                        }
+                    }
+                }
+            }
+            return Optional.empty();
+        }
+
+        /**
+         * Returns the element at the given index, if this is an array of at least that size
+         *
+         * @param index
+         * @return
+         */
+        public Optional<Node> get(int index)
+        {
+            if (this.isArray() && index >= 0 && index < this.size())
+            {
+                return Optional.of(new Node(JsonCompactTree.this.children[this.childOffset() + index]));
+            }
+            return Optional.empty();
+        }
+
+        /**
+         * Resolves the given JSON pointer, like {@code /data/items/0}, relative to this node
+         *
+         * @param jsonPointer
+         * @return
+         */
+        public Optional<Node> at(String jsonPointer)
+        {
+            return this.at(JsonPointer.compile(jsonPointer));
+        }
+
+        public Optional<Node> at(JsonPointer jsonPointer)
+        {
+            Optional<Node> node = Optional.of(this);
+            for (JsonPointer pointer = jsonPointer; node.isPresent() && !pointer.matches(); pointer = pointer.tail())
+            {
+                String property = pointer.getMatchingProperty();
+                int matchingIndex = pointer.getMatchingIndex();
+                node = node.flatMap(current -> current.isArray() ? current.get(matchingIndex) : current.get(property));
+            }
+            return node;
+        }
+
+        /**
+         * Returns the field names of an object in document order, otherwise an empty {@link Stream}
+         *
+         * @return
+         */
+        public Stream<String> fieldNames()
+        {
+            return this.isObject() ? this.childPositions()
+                                         .mapToObj(position -> JsonCompactTree.this.keyDictionary.get(JsonCompactTree.this.childKeys[position]))
+                    : Stream.empty();
+        }
+
+        /**
+         * Returns the fields of an object in document order, otherwise an empty {@link Stream}
+         *
+         * @return
+         */
+        public Stream<Map.Entry<String, Node>> fields()
+        {
+            return this.isObject() ? this.childPositions()
+                                         .mapToObj(position -> new AbstractMap.SimpleImmutableEntry<>(JsonCompactTree.this.keyDictionary.get(JsonCompactTree.this.childKeys[position]),
+                                                                                                      new Node(JsonCompactTree.this.children[position])))
+                    : Stream.empty();
+        }
+
+        /**
+         * Returns the elements of an array or the field values of an object, otherwise an empty {@link Stream}
+         *
+         * @return
+         */
+        public Stream<Node> elements()
+        {
+            return this.childPositions()
+                       .mapToObj(position -> new Node(JsonCompactTree.this.children[position]));
+        }
+
+        /**
+         * Returns the text of a string, the textual form of numbers, booleans and null, and an empty {@link String} for
+         * containers, like {@link JsonNode#asText()}
+         *
+         * @return
+         */
+        public String asText()
+        {
+            long payload = JsonCompactTree.this.payloads[this.index];
+            switch (this.type())
+            {
+                case TYPE_STRING:
+                case TYPE_BIG_INTEGER:
+                case TYPE_BIG_DECIMAL:
+                    return JsonCompactTree.this.strings[(int) payload];
+                case TYPE_INT:
+                case TYPE_LONG:
+                    return String.valueOf(payload);
+                case TYPE_DOUBLE:
+                    return String.valueOf(Double.longBitsToDouble(payload));
+                case TYPE_TRUE:
+                    return "true";
+                case TYPE_FALSE:
+                    return "false";
+                case TYPE_NULL:
+                    return "null";
+                default:
+                    return "";
+            }
+        }
+
+        /**
+         * Returns the value of a number or boolean as long, or parses it from a string, otherwise 0
+         *
+         * @return
+         */
+        public long asLong()
+        {
+            long payload = JsonCompactTree.this.payloads[this.index];
+            switch (this.type())
+            {
+                case TYPE_INT:
+                case TYPE_LONG:
+                    return payload;
+                case TYPE_DOUBLE:
+                    return (long) Double.longBitsToDouble(payload);
+                case TYPE_TRUE:
+                    return 1;
+                default:
+                    return this.numberValue()
+                               .map(Number::longValue)
+                               .orElse(0L);
+            }
+        }
+
+        /**
+         * Returns the value of a number or boolean as double, or parses it from a string, otherwise 0.0
+         *
+         * @return
+         */
+        public double asDouble()
+        {
+            long payload = JsonCompactTree.this.payloads[this.index];
+            switch (this.type())
+            {
+                case TYPE_INT:
+                case TYPE_LONG:
+                    return payload;
+                case TYPE_DOUBLE:
+                    return Double.longBitsToDouble(payload);
+                case TYPE_TRUE:
+                    return 1.0;
+                default:
+                    return this.numberValue()
+                               .map(Number::doubleValue)
+                               .orElse(0.0);
+            }
+        }
+
+        /**
+         * Returns true for the boolean true, non zero numbers and the string "true", like {@link JsonNode#asBoolean()}
+         *
+         * @return
+         */
+        public boolean asBoolean()
+        {
+            switch (this.type())
+            {
+                case TYPE_TRUE:
+                    return true;
+                case TYPE_STRING:
+                    return "true".equals(this.asText()
+                                             .trim());
+                case TYPE_INT:
+                case TYPE_LONG:
+                    return this.asLong() != 0;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Returns the {@link Number} of a number node, or of a string that can be parsed as one
+         *
+         * @return
+         */
+        public Optional<Number> numberValue()
+        {
+            long payload = JsonCompactTree.this.payloads[this.index];
+            switch (this.type())
+            {
+                case TYPE_INT:
+                    return Optional.of((int) payload);
+                case TYPE_LONG:
+                    return Optional.of(payload);
+                case TYPE_DOUBLE:
+                    return Optional.of(Double.longBitsToDouble(payload));
+                case TYPE_BIG_INTEGER:
+                    return Optional.of(new BigInteger(this.asText()));
+                case TYPE_BIG_DECIMAL:
+                case TYPE_STRING:
+                    try
+                    {
+                        return Optional.of(new BigDecimal(this.asText()
+                                                              .trim()));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return Optional.empty();
+                    }
+                default:
+                    return Optional.empty();
+            }
+        }
+
+        /**
+         * Converts this node and all its children into a {@link JsonNode} tree
+         *
+         * @return
+         */
+        public JsonNode toJsonNode()
+        {
+            JsonNodeFactory factory = JsonNodeFactory.instance;
+            long payload = JsonCompactTree.this.payloads[this.index];
+            switch (this.type())
+            {
+                case TYPE_OBJECT:
+                    ObjectNode objectNode = factory.objectNode();
+                    this.fields()
+                        .forEach(field -> objectNode.set(field.getKey(), field.getValue()
+                                                                              .toJsonNode()));
+                    return objectNode;
+                case TYPE_ARRAY:
+                    ArrayNode arrayNode = factory.arrayNode(this.size());
+                    this.elements()
+                        .forEach(element -> arrayNode.add(element.toJsonNode()));
+                    return arrayNode;
+                case TYPE_STRING:
+                    return factory.textNode(this.asText());
+                case TYPE_INT:
+                    return factory.numberNode((int) payload);
+                case TYPE_LONG:
+                    return factory.numberNode(payload);
+                case TYPE_DOUBLE:
+                    return factory.numberNode(Double.longBitsToDouble(payload));
+                case TYPE_BIG_INTEGER:
+                    return factory.numberNode(new BigInteger(this.asText()));
+                case TYPE_BIG_DECIMAL:
+                    return factory.numberNode(new BigDecimal(this.asText()));
+                case TYPE_TRUE:
+                    return factory.booleanNode(true);
+                case TYPE_FALSE:
+                    return factory.booleanNode(false);
+                default:
+                    return factory.nullNode();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.toJsonNode()
+                       .toString();
+        }
+
+        private byte type()
+        {
+            return JsonCompactTree.this.types[this.index];
+        }
+
+        private int childOffset()
+        {
+            return (int) (JsonCompactTree.this.payloads[this.index] >>> 32);
+        }
+
+        private IntStream childPositions()
+        {
+            int offset = this.childOffset();
+            return this.isContainer() ? IntStream.range(offset, offset + this.size()) : IntStream.empty();
+        }
+    }
+
+    /**
+     * Reads the tokens of one value into the flat arrays of a {@link JsonCompactTree}. The children of a container are
+     * collected on a shared pending stack while the container is read, and moved into the flat child arrays once it
+     * ends, which keeps the children of every container contiguous without allocating anything per container.
+     *
+     * @author omnaest
+     */
+    private static class Builder
+    {
+        private final JsonKeyDictionary keyDictionary;
+
+        private byte[]   types           = new byte[64];
+        private long[]   payloads        = new long[64];
+        private int      nodeCount;
+        private int[]    children        = new int[64];
+        private int[]    childKeys       = new int[64];
+        private int      childCount;
+        private int[]    pendingChildren = new int[64];
+        private int[]    pendingKeys     = new int[64];
+        private int      pendingCount;
+        private String[] strings         = new String[16];
+        private int      stringCount;
+
+        private final Map<String, Integer> stringToIndex = new HashMap<>();
+
+        private Builder(JsonKeyDictionary keyDictionary)
+        {
+            super();
+            this.keyDictionary = keyDictionary;
+        }
+
+        private JsonCompactTree build(JsonParser jsonParser, JsonToken token) throws IOException
+        {
+            this.readValue(jsonParser, token);
+            return new JsonCompactTree(this.keyDictionary, Arrays.copyOf(this.types, this.nodeCount), Arrays.copyOf(this.payloads, this.nodeCount),
+                                       Arrays.copyOf(this.children, this.childCount), Arrays.copyOf(this.childKeys, this.childCount),
+                                       Arrays.copyOf(this.strings, this.stringCount));
+        }
+
+        private int readValue(JsonParser jsonParser, JsonToken token) throws IOException
+        {
+            switch (token)
+            {
+                case START_OBJECT:
+                {
+                    int node = this.addNode(TYPE_OBJECT, 0);
+                    int pendingStart = this.pendingCount;
+                    for (JsonToken current = jsonParser.nextToken(); current == JsonToken.FIELD_NAME; current = jsonParser.nextToken())
+                    {
+                        int keyId = this.keyDictionary.intern(jsonParser.currentName());
+                        this.addPending(keyId, this.readValue(jsonParser, jsonParser.nextToken()));
+                    }
+                    this.completeContainer(node, pendingStart);
+                    return node;
+                }
+                case START_ARRAY:
+                {
+                    int node = this.addNode(TYPE_ARRAY, 0);
+                    int pendingStart = this.pendingCount;
+                    for (JsonToken current = jsonParser.nextToken(); current != JsonToken.END_ARRAY; current = jsonParser.nextToken())
+                    {
+                        if (current == null)
+                        {
+                            throw new IOException("Unexpected end of input within array");
+                        }
+                        this.addPending(-1, this.readValue(jsonParser, current));
+                    }
+                    this.completeContainer(node, pendingStart);
+                    return node;
+                }
+                case VALUE_STRING:
+                    return this.addNode(TYPE_STRING, this.addString(jsonParser.getText()));
+                case VALUE_NUMBER_INT:
+                    switch (jsonParser.getNumberType())
+                    {
+                        case INT:
+                            return this.addNode(TYPE_INT, jsonParser.getIntValue());
+                        case LONG:
+                            return this.addNode(TYPE_LONG, jsonParser.getLongValue());
+                        default:
+                            return this.addNode(TYPE_BIG_INTEGER, this.addString(jsonParser.getBigIntegerValue()
+                                                                                           .toString()));
+                    }
+                case VALUE_NUMBER_FLOAT:
+                    if (jsonParser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL)
+                    {
+                        return this.addNode(TYPE_BIG_DECIMAL, this.addString(jsonParser.getDecimalValue()
+                                                                                       .toString()));
+                    }
+                    return this.addNode(TYPE_DOUBLE, Double.doubleToRawLongBits(jsonParser.getDoubleValue()));
+                case VALUE_TRUE:
+                    return this.addNode(TYPE_TRUE, 1);
+                case VALUE_FALSE:
+                    return this.addNode(TYPE_FALSE, 0);
+                case VALUE_NULL:
+                    return this.addNode(TYPE_NULL, 0);
+                default:
+                    throw new IOException("Unsupported token for a compact tree: " + token);
+            }
+        }
+
+        private int addNode(byte type, long payload)
+        {
+            if (this.nodeCount == this.types.length)
+            {
+                this.types = Arrays.copyOf(this.types, this.nodeCount * 2);
+                this.payloads = Arrays.copyOf(this.payloads, this.nodeCount * 2);
+            }
+            this.types[this.nodeCount] = type;
+            this.payloads[this.nodeCount] = payload;
+            return this.nodeCount++;
+        }
+
+        private void addPending(int keyId, int node)
+        {
+            if (this.pendingCount == this.pendingChildren.length)
+            {
+                this.pendingChildren = Arrays.copyOf(this.pendingChildren, this.pendingCount * 2);
+                this.pendingKeys = Arrays.copyOf(this.pendingKeys, this.pendingCount * 2);
+            }
+            this.pendingChildren[this.pendingCount] = node;
+            this.pendingKeys[this.pendingCount] = keyId;
+            this.pendingCount++;
+        }
+
+        private void completeContainer(int node, int pendingStart)
+        {
+            int count = this.pendingCount - pendingStart;
+            if (this.childCount + count > this.children.length)
+            {
+                int capacity = Math.max(this.children.length * 2, this.childCount + count);
+                this.children = Arrays.copyOf(this.children, capacity);
+                this.childKeys = Arrays.copyOf(this.childKeys, capacity);
+            }
+            System.arraycopy(this.pendingChildren, pendingStart, this.children, this.childCount, count);
+            System.arraycopy(this.pendingKeys, pendingStart, this.childKeys, this.childCount, count);
+            this.payloads[node] = ((long) this.childCount << 32) | count;
+            this.childCount += count;
+            this.pendingCount = pendingStart;
+        }
+
+        private int addString(String value)
+        {
+            Integer existingIndex = this.stringToIndex.get(value);
+            if (existingIndex != null)
+            {
+                return existingIndex;
+            }
+            if (this.stringCount == this.strings.length)
+            {
+                this.strings = Arrays.copyOf(this.strings, this.stringCount * 2);
+            }
+            this.strings[this.stringCount] = value;
+            this.stringToIndex.put(value, this.stringCount);
+            return this.stringCount++;
+        }
+    }
+}
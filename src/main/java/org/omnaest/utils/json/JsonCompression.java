@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of JSON streams
+ *
+ * @see #decompress(InputStream)
+ * @author omnaest
+ */
+public enum JsonCompression
+{
+    NONE
+    {
+        @Override
+        public OutputStream compress(OutputStream outputStream)
+        {
+            return outputStream;
+        }
+    },
+
+    /**
+     * Single threaded gzip by {@link GZIPOutputStream}
+     */
+    GZIP
+    {
+        @Override
+        public OutputStream compress(OutputStream outputStream) throws IOException
+        {
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        }
+    },
+
+    /**
+     * Gzip compressing blocks in parallel by a {@link ParallelGzipOutputStream}, which is readable by any gzip
+     * decompressor
+     */
+    PARALLEL_GZIP
+    {
+        @Override
+        public OutputStream compress(OutputStream outputStream) throws IOException
+        {
+            return new ParallelGzipOutputStream(outputStream);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Returns an {@link OutputStream} compressing the data written into it into the given {@link OutputStream}, which is
+     * finished and closed by closing the returned one
+     *
+     * @param outputStream
+     * @return
+     * @throws IOException
+     */
+    public abstract OutputStream compress(OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns an {@link InputStream} reading the given one, which is decompressed, if it starts with the gzip magic
+     * bytes {@code 1f 8b}, and read as it is otherwise. As JSON text never starts with the control character
+     * {@code 1f}, the detection is unambiguous.
+     *
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    public static InputStream decompress(InputStream inputStream) throws IOException
+    {
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, 2);
+        byte[] magic = new byte[2];
+        int count = 0;
+        int readCount;
+        while (count < magic.length && (readCount = pushbackInputStream.read(magic, count, magic.length - count)) > 0)
+        {
+            count += readCount;
+        }
+        pushbackInputStream.unread(magic, 0, count);
+
+        boolean gzipped = count == 2 && magic[0] == 0x1f && magic[1] == (byte) 0x8b;
+        return gzipped ? new GZIPInputStream(pushbackInputStream, BUFFER_SIZE) : pushbackInputStream;
+    }
+}
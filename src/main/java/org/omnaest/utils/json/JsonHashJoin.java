@@ -0,0 +1,426 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hash join of two UTF-8 encoded JSON array files by a key extracted from their elements, without loading the larger
+ * side into memory.
+ * <p>
+ * The elements of the build side, which should be the smaller one, are read into a hash table by key, and the elements
+ * of the probe side are streamed against it, emitting the joined records lazily. If the build side exceeds the memory
+ * budget, both sides are split by the hash of their keys into partition files, in the manner of a Grace hash join, and
+ * every pair of partitions is joined on its own, partitioning further if needed. Partitioning copies the raw bytes of
+ * the elements, so nothing gets lost by binding and serializing them again.
+ * <p>
+ * Keys are compared by {@link Object#equals(Object)}. A null key never matches, like in SQL. The order of the joined
+ * records follows the probe side only as long as no partitioning takes place.
+ * <p>
+ * Not thread safe.
+ *
+ * @author omnaest
+ * @param <P>
+ *            type of the probe side elements
+ * @param <B>
+ *            type of the build side elements
+ * @param <K>
+ *            type of the key
+ */
+@Slf4j
+public class JsonHashJoin<P, B, K>
+{
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private static final int MAX_PARTITIONS      = 256;
+    private static final int MAX_PARTITION_LEVEL = 8;
+
+    private static final byte[] OPENING_BRACKET = { '[' };
+    private static final byte[] CLOSING_BRACKET = { ']' };
+    private static final byte[] COMMA           = { ',' };
+
+    public static enum JoinType
+    {
+        /**
+         * Emits only the probe side elements with at least one matching build side element
+         */
+        INNER,
+
+        /**
+         * Emits every probe side element, with null as build side element if there is no match
+         */
+        LEFT
+    }
+
+    private final ObjectMapper                     objectMapper;
+    private final Path                             probeFile;
+    private final Class<P>                         probeType;
+    private final Function<? super P, ? extends K> probeKeyExtractor;
+    private final Path                             buildFile;
+    private final Class<B>                         buildType;
+    private final Function<? super B, ? extends K> buildKeyExtractor;
+
+    private JoinType joinType     = JoinType.INNER;
+    private long     memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    public JsonHashJoin(ObjectMapper objectMapper, Path probeFile, Class<P> probeType, Function<? super P, ? extends K> probeKeyExtractor,
+                        Path buildFile, Class<B> buildType, Function<? super B, ? extends K> buildKeyExtractor)
+    {
+        super();
+        this.objectMapper = objectMapper;
+        this.probeFile = probeFile;
+        this.probeType = probeType;
+        this.probeKeyExtractor = probeKeyExtractor;
+        this.buildFile = buildFile;
+        this.buildType = buildType;
+        this.buildKeyExtractor = buildKeyExtractor;
+    }
+
+    /**
+     * Defines the {@link JoinType}, which defaults to {@link JoinType#INNER}
+     *
+     * @param joinType
+     * @return
+     */
+    public JsonHashJoin<P, B, K> withJoinType(JoinType joinType)
+    {
+        this.joinType = joinType;
+        return this;
+    }
+
+    /**
+     * Defines the size of the raw JSON of the build side elements held in memory at once, beyond which the sides are
+     * partitioned. Defaults to {@link #DEFAULT_MEMORY_BUDGET}.
+     *
+     * @param memoryBudget
+     *            in bytes of JSON
+     * @return
+     */
+    public JsonHashJoin<P, B, K> withMemoryBudget(long memoryBudget)
+    {
+        if (memoryBudget < 1)
+        {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * Joins both sides and returns the lazy {@link Stream} of the records the given joiner creates from each probe side
+     * element and its matching build side element, which is null for an unmatched one of a {@link JoinType#LEFT} join.
+     * <p>
+     * Note: the returned {@link Stream} has to be closed by the caller, which deletes any partition files.
+     *
+     * @param joiner
+     * @return
+     */
+    public <O> Stream<O> join(BiFunction<? super P, ? super B, ? extends O> joiner)
+    {
+        List<Path> partitionFiles = new ArrayList<>();
+        try
+        {
+            return this.<O>join(this.probeFile, this.buildFile, 0, partitionFiles, joiner)
+                       .onClose(() -> deleteAll(partitionFiles));
+        }
+        catch (IOException e)
+        {
+            deleteAll(partitionFiles);
+            throw new IllegalStateException(e);
+        }
+        catch (RuntimeException e)
+        {
+            deleteAll(partitionFiles);
+            throw e;
+        }
+    }
+
+    private <O> Stream<O> join(Path probeFile, Path buildFile, int level, List<Path> partitionFiles,
+                               BiFunction<? super P, ? super B, ? extends O> joiner)
+        throws IOException
+    {
+        Map<K, List<B>> table = this.readBuildTable(buildFile, level < MAX_PARTITION_LEVEL);
+        if (table != null)
+        {
+            return this.probe(probeFile, table, joiner);
+        }
+
+        int partitionCount = (int) Math.min(MAX_PARTITIONS, Math.max(2, 2 * Files.size(buildFile) / this.memoryBudget + 1));
+        LOGGER.debug("Build side " + buildFile + " exceeds the memory budget, splitting it into " + partitionCount + " partitions");
+        Path[] buildPartitions = this.partition(buildFile, this.buildType, this.buildKeyExtractor, partitionCount, level, partitionFiles);
+        Path[] probePartitions = this.partition(probeFile, this.probeType, this.probeKeyExtractor, partitionCount, level, partitionFiles);
+        return IntStream.range(0, partitionCount)
+                        .boxed()
+                        .flatMap(ii ->
+                        {
+                            try
+                            {
+                                return this.join(probePartitions[ii], buildPartitions[ii], level + 1, partitionFiles, joiner)
+                                           .onClose(() -> deleteAll(Arrays.asList(probePartitions[ii], buildPartitions[ii])));
+                            }
+                            catch (IOException e)
+                            {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+    }
+
+    /**
+     * Reads the build side elements by key
+     *
+     * @param buildFile
+     * @param limited
+     * @return null, if limited and the elements exceed the memory budget
+     * @throws IOException
+     */
+    private Map<K, List<B>> readBuildTable(Path buildFile, boolean limited) throws IOException
+    {
+        Map<K, List<B>> table = new HashMap<>();
+        long size = 0;
+        try (JsonArrayCursor cursor = JsonArrayCursor.open(buildFile, 0, 0, this.objectMapper))
+        {
+            while (cursor.next())
+            {
+                long offset = cursor.getElementOffset();
+                B element = cursor.read(this.buildType);
+                size += cursor.getCheckpoint()
+                              .getOffset()
+                        - offset;
+                if (limited && size > this.memoryBudget)
+                {
+                    return null;
+                }
+
+                K key = this.buildKeyExtractor.apply(element);
+                if (key != null)
+                {
+                    table.computeIfAbsent(key, k -> new ArrayList<>(1))
+                         .add(element);
+                }
+            }
+        }
+        return table;
+    }
+
+    private <O> Stream<O> probe(Path probeFile, Map<K, List<B>> table, BiFunction<? super P, ? super B, ? extends O> joiner) throws IOException
+    {
+        JsonArrayCursor cursor = JsonArrayCursor.open(probeFile, 0, 0, this.objectMapper);
+        Iterable<P> iterable = () -> new CursorIterator<>(cursor, this.probeType);
+        return StreamSupport.stream(iterable.spliterator(), false)
+                            .onClose(() ->
+                            {
+                                try
+                                {
+                                    cursor.close();
+                                }
+                                catch (IOException e)
+                                {
+                                    throw new IllegalStateException(e);
+                                }
+                            })
+                            .flatMap(element ->
+                            {
+                                K key = this.probeKeyExtractor.apply(element);
+                                List<B> matches = key != null ? table.getOrDefault(key, Collections.emptyList()) : Collections.emptyList();
+                                if (matches.isEmpty())
+                                {
+                                    return this.joinType == JoinType.LEFT ? Stream.of(joiner.apply(element, null)) : Stream.empty();
+                                }
+                                return matches.stream()
+                                              .map(match -> joiner.apply(element, match));
+                            });
+    }
+
+    /**
+     * Splits the given array file into partition files by the hash of the key of every element, copying the raw bytes
+     * of the elements
+     *
+     * @param file
+     * @param type
+     * @param keyExtractor
+     * @param partitionCount
+     * @param level
+     *            the partitioning depth, which varies the hash, so that a partition of the previous level is split up
+     *            again
+     * @param partitionFiles
+     *            all created partition files are added to
+     * @return
+     * @throws IOException
+     */
+    private <T> Path[] partition(Path file, Class<T> type, Function<? super T, ? extends K> keyExtractor, int partitionCount, int level,
+                                 List<Path> partitionFiles)
+        throws IOException
+    {
+        Path[] partitions = new Path[partitionCount];
+        OutputStream[] outputStreams = new OutputStream[partitionCount];
+        WritableByteChannel[] targetChannels = new WritableByteChannel[partitionCount];
+        boolean[] empty = new boolean[partitionCount];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                JsonArrayCursor cursor = JsonArrayCursor.open(channel, 0, 0, this.objectMapper))
+        {
+            for (int ii = 0; ii < partitionCount; ii++)
+            {
+                partitions[ii] = Files.createTempFile("json-join-partition", ".json");
+                partitionFiles.add(partitions[ii]);
+                outputStreams[ii] = new BufferedOutputStream(Files.newOutputStream(partitions[ii]));
+                targetChannels[ii] = Channels.newChannel(outputStreams[ii]);
+                outputStreams[ii].write(OPENING_BRACKET);
+                empty[ii] = true;
+            }
+
+            while (cursor.next())
+            {
+                long offset = cursor.getElementOffset();
+                K key = keyExtractor.apply(cursor.read(type));
+                long length = cursor.getCheckpoint()
+                                    .getOffset()
+                        - offset;
+
+                int partition = partitionOf(key, level, partitionCount);
+                if (!empty[partition])
+                {
+                    outputStreams[partition].write(COMMA);
+                }
+                empty[partition] = false;
+                for (long position = offset; position < offset + length;)
+                {
+                    position += channel.transferTo(position, offset + length - position, targetChannels[partition]);
+                }
+            }
+
+            for (OutputStream outputStream : outputStreams)
+            {
+                outputStream.write(CLOSING_BRACKET);
+            }
+        }
+        finally
+        {
+            for (OutputStream outputStream : outputStreams)
+            {
+                if (outputStream != null)
+                {
+                    outputStream.close();
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private static int partitionOf(Object key, int level, int partitionCount)
+    {
+        long hash = (Objects.hashCode(key) ^ (level * 0x9E3779B97F4A7C15L)) * 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) Math.floorMod(hash, (long) partitionCount);
+    }
+
+    private static void deleteAll(List<Path> files)
+    {
+        for (Path file : files)
+        {
+            try
+            {
+                Files.deleteIfExists(file);
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Unable to delete temporary join partition file " + file, e);
+            }
+        }
+    }
+
+    /**
+     * {@link Iterator} binding the elements of a {@link JsonArrayCursor}
+     *
+     * @author omnaest
+     * @param <T>
+     */
+    private static class CursorIterator<T> implements Iterator<T>
+    {
+        private final JsonArrayCursor cursor;
+        private final Class<T>        type;
+        private Boolean               positioned;
+
+        private CursorIterator(JsonArrayCursor cursor, Class<T> type)
+        {
+            super();
+            this.cursor = cursor;
+            this.type = type;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (this.positioned == null)
+            {
+                try
+                {
+                    this.positioned = this.cursor.next();
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return this.positioned;
+        }
+
+        @Override
+        public T next()
+        {
+            if (!this.hasNext())
+            {
+                throw new NoSuchElementException("No further element available within the JSON array");
+            }
+
+            try
+            {
+                this.positioned = null;
+                return this.cursor.read(this.type);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of JSON field names, which maps every distinct name to a dense int id, so that documents referring to a
+ * name only need to store that id. One instance can be shared by any number of {@link JsonCompactTree}s, which then
+ * hold every distinct field name exactly once across all of them.
+ * <p>
+ * Thread safe. Note that ids are never released, so a dictionary shared between documents with unbounded distinct
+ * field names grows without bound as well.
+ *
+ * @author omnaest
+ */
+public class JsonKeyDictionary
+{
+    private final Map<String, Integer> keyToId = new ConcurrentHashMap<>();
+
+    private volatile String[] keys = new String[16];
+    private volatile int      size = 0;
+
+    /**
+     * Returns the id of the given key, adding the key to this dictionary if it is not already contained
+     *
+     * @param key
+     * @return
+     */
+    public int intern(String key)
+    {
+        Integer id = this.keyToId.get(key);
+        return id != null ? id : this.add(key);
+    }
+
+    private synchronized int add(String key)
+    {
+        Integer existingId = this.keyToId.get(key);
+        if (existingId != null)
+        {
+            return existingId;
+        }
+
+        int id = this.size;
+        if (id == this.keys.length)
+        {
+            this.keys = Arrays.copyOf(this.keys, id * 2);
+        }
+        this.keys[id] = key;
+
+        // the volatile write publishes the key to any thread that reads size before the key, see get(int)
+        this.size = id + 1;
+        this.keyToId.put(key, id);
+        return id;
+    }
+
+    /**
+     * Returns the id of the given key, or -1 if the key is not part of this dictionary
+     *
+     * @param key
+     * @return
+     */
+    public int indexOf(String key)
+    {
+        Integer id = key != null ? this.keyToId.get(key) : null;
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the key for the given id
+     *
+     * @param id
+     * @return
+     * @throws IndexOutOfBoundsException
+     *             if the id has not been handed out by this dictionary
+     */
+    public String get(int id)
+    {
+        if (id < 0 || id >= this.size)
+        {
+            throw new IndexOutOfBoundsException("Unknown key id: " + id);
+        }
+        return this.keys[id];
+    }
+
+    /**
+     * Returns the number of distinct keys
+     *
+     * @return
+     */
+    public int size()
+    {
+        return this.size;
+    }
+}
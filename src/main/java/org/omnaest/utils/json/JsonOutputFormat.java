@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+/**
+ * Layout of a file of JSON records
+ *
+ * @author omnaest
+ */
+public enum JsonOutputFormat
+{
+    /**
+     * One JSON array holding all records, like {@code [{...},{...}]}
+     */
+    ARRAY,
+
+    /**
+     * Newline delimited JSON, with one record per line, like {@code {...}\n{...}\n}
+     */
+    NDJSON
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes records into one file per partition, selected by a key function, like one file per tenant or per day, each
+ * of which is a JSON array or NDJSON as given by the {@link JsonOutputFormat}.
+ * <p>
+ * Every partition being written has its own open {@link JsonGenerator}. The number of open files is bounded: beyond
+ * the limit, the least recently written partition is closed, without terminating its array, and reopened in append
+ * mode as soon as records for it arrive again. All partitions are terminated properly by {@link #close()}.
+ * <p>
+ * The files of the partitions are created or truncated by the first record written into them. Not thread safe.
+ *
+ * @author omnaest
+ * @param <T>
+ *            type of the records
+ * @param <K>
+ *            type of the partition keys
+ */
+public class JsonPartitionedWriter<T, K> implements Closeable
+{
+    public static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+    private final ObjectWriter                     objectWriter;
+    private final Function<? super T, ? extends K> keyFunction;
+    private final Function<? super K, Path>        partitionFileFunction;
+    private final JsonOutputFormat                 format;
+
+    private final Map<K, Partition> partitions     = new HashMap<>();
+    private final Map<K, Partition> openPartitions = new LinkedHashMap<>(16, 0.75f, true);
+    private int                     maxOpenFiles   = DEFAULT_MAX_OPEN_FILES;
+    private boolean                 closed         = false;
+
+    public JsonPartitionedWriter(ObjectMapper objectMapper, Function<? super T, ? extends K> keyFunction,
+                                 Function<? super K, Path> partitionFileFunction, JsonOutputFormat format)
+    {
+        super();
+        this.objectWriter = objectMapper.writer()
+                                        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.keyFunction = keyFunction;
+        this.partitionFileFunction = partitionFileFunction;
+        this.format = format;
+    }
+
+    /**
+     * Defines the maximum number of files kept open at once, which defaults to {@link #DEFAULT_MAX_OPEN_FILES}
+     *
+     * @param maxOpenFiles
+     * @return
+     */
+    public JsonPartitionedWriter<T, K> withMaxOpenFiles(int maxOpenFiles)
+    {
+        if (maxOpenFiles < 1)
+        {
+            throw new IllegalArgumentException("Maximum number of open files must be positive: " + maxOpenFiles);
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        return this;
+    }
+
+    /**
+     * Writes the given record into the file of its partition
+     *
+     * @param record
+     * @throws IOException
+     */
+    public void write(T record) throws IOException
+    {
+        if (this.closed)
+        {
+            throw new IllegalStateException("Partitioned writer has been closed");
+        }
+        K key = this.keyFunction.apply(record);
+        Partition partition = this.openPartitions.get(key);
+        if (partition == null)
+        {
+            partition = this.partitions.computeIfAbsent(key, k -> new Partition(this.partitionFileFunction.apply(k)));
+            this.evictBeyond(this.maxOpenFiles - 1);
+            partition.open();
+            this.openPartitions.put(key, partition);
+        }
+        partition.write(record);
+    }
+
+    /**
+     * Writes all records of the given {@link Stream}
+     *
+     * @param records
+     * @throws IOException
+     */
+    public void writeAll(Stream<? extends T> records) throws IOException
+    {
+        Iterator<? extends T> iterator = records.iterator();
+        while (iterator.hasNext())
+        {
+            this.write(iterator.next());
+        }
+    }
+
+    private void evictBeyond(int openFiles) throws IOException
+    {
+        Iterator<Partition> iterator = this.openPartitions.values()
+                                                          .iterator();
+        while (this.openPartitions.size() > openFiles && iterator.hasNext())
+        {
+            Partition partition = iterator.next();
+            iterator.remove();
+            partition.closeFile();
+        }
+    }
+
+    /**
+     * Returns the files of all partitions written so far by their keys, which after {@link #close()} are the finished
+     * files
+     *
+     * @return
+     */
+    public Map<K, Path> getPartitionFiles()
+    {
+        Map<K, Path> partitionFiles = new LinkedHashMap<>();
+        this.partitions.forEach((key, partition) -> partitionFiles.put(key, partition.file));
+        return partitionFiles;
+    }
+
+    /**
+     * Terminates and closes the files of all partitions, the open ones directly and those closed before by reopening
+     * them. A failing partition does not keep the others from being terminated, and further calls only retry the
+     * partitions which have failed before.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.closed = true;
+        this.openPartitions.clear();
+
+        IOException exception = null;
+        for (Partition partition : this.partitions.values())
+        {
+            try
+            {
+                partition.terminate();
+            }
+            catch (IOException e)
+            {
+                if (exception == null)
+                {
+                    exception = e;
+                }
+                else
+                {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null)
+        {
+            throw exception;
+        }
+    }
+
+    private class Partition
+    {
+        private final Path file;
+
+        private boolean       created    = false;
+        private boolean       empty      = true;
+        private boolean       terminated = false;
+        private OutputStream  outputStream;
+        private JsonGenerator jsonGenerator;
+
+        private Partition(Path file)
+        {
+            super();
+            this.file = file;
+        }
+
+        private void open() throws IOException
+        {
+            StandardOpenOption mode = this.created ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            this.outputStream = new BufferedOutputStream(Files.newOutputStream(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode));
+            this.jsonGenerator = JsonPartitionedWriter.this.objectWriter.createGenerator(this.outputStream, JsonEncoding.UTF8)
+                                                                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                                                                        .setRootValueSeparator(null);
+            if (!this.created && JsonPartitionedWriter.this.format == JsonOutputFormat.ARRAY)
+            {
+                this.jsonGenerator.writeRaw('[');
+            }
+            this.created = true;
+        }
+
+        private void write(T record) throws IOException
+        {
+            if (JsonPartitionedWriter.this.format == JsonOutputFormat.ARRAY && !this.empty)
+            {
+                this.jsonGenerator.writeRaw(',');
+            }
+            JsonPartitionedWriter.this.objectWriter.writeValue(this.jsonGenerator, record);
+            if (JsonPartitionedWriter.this.format == JsonOutputFormat.NDJSON)
+            {
+                this.jsonGenerator.writeRaw('\n');
+            }
+            this.empty = false;
+        }
+
+        private void closeFile() throws IOException
+        {
+            try
+            {
+                // flushes into the stream, which the generator does not close itself
+                this.jsonGenerator.close();
+            }
+            finally
+            {
+                try
+                {
+                    this.outputStream.close();
+                }
+                finally
+                {
+                    this.outputStream = null;
+                    this.jsonGenerator = null;
+                }
+            }
+        }
+
+        private void terminate() throws IOException
+        {
+            if (this.terminated)
+            {
+                return;
+            }
+            if (JsonPartitionedWriter.this.format == JsonOutputFormat.ARRAY)
+            {
+                if (this.jsonGenerator == null)
+                {
+                    this.open();
+                }
+                try
+                {
+                    this.jsonGenerator.writeRaw(']');
+                }
+                catch (IOException e)
+                {
+                    try
+                    {
+                        this.closeFile();
+                    }
+                    catch (IOException suppressed)
+                    {
+                        e.addSuppressed(suppressed);
+                    }
+                    throw e;
+                }
+            }
+            // the terminating bracket must not be written twice, even if closing the file fails
+            this.terminated = true;
+            if (this.jsonGenerator != null)
+            {
+                this.closeFile();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Extracts the values at a set of {@link JsonPointer}s from a {@link JsonParser} in a single pass, binding only the
+ * values at those pointers.
+ * <p>
+ * The pointers are compiled into a trie of their segments, so the parser descends only into fields and elements that
+ * lie on the path to at least one pointer, and skips everything else with {@link JsonParser#skipChildren()}. Parsing
+ * stops as soon as all pointers have been found.
+ * <p>
+ * Of duplicate field names within an object, the first one wins and the later ones are skipped, as only that rule
+ * allows to stop early. Note that {@link JsonNode#at(JsonPointer)} takes the last one instead.
+ * <p>
+ * Thread safe, as it is immutable once created.
+ *
+ * @author omnaest
+ */
+public class JsonPointerExtractor
+{
+    private final TrieNode root;
+    private final int      pointerCount;
+
+    private JsonPointerExtractor(TrieNode root, int pointerCount)
+    {
+        super();
+        this.root = root;
+        this.pointerCount = pointerCount;
+    }
+
+    public static JsonPointerExtractor of(Collection<JsonPointer> pointers)
+    {
+        TrieNode root = new TrieNode();
+        int pointerCount = 0;
+        for (JsonPointer pointer : pointers)
+        {
+            TrieNode node = root;
+            for (JsonPointer remaining = pointer; !remaining.matches(); remaining = remaining.tail())
+            {
+                node = node.children.computeIfAbsent(remaining.getMatchingProperty(), segment -> new TrieNode());
+            }
+            if (node.pointer == null)
+            {
+                node.pointer = pointer;
+                pointerCount++;
+            }
+        }
+        return new JsonPointerExtractor(root, pointerCount);
+    }
+
+    /**
+     * Reads the next value from the given {@link JsonParser} up to the point where all pointers have been found, and
+     * returns the values at the pointers bound to the given type. The parser is not closed.
+     *
+     * @param jsonParser
+     * @param objectMapper
+     * @param type
+     * @return the values by pointer, in the order they occur within the content, without the pointers not found
+     * @throws IOException
+     */
+    public <T> Map<JsonPointer, T> extract(JsonParser jsonParser, ObjectMapper objectMapper, Class<T> type) throws IOException
+    {
+        Map<JsonPointer, T> result = new LinkedHashMap<>();
+        JsonToken token = jsonParser.hasCurrentToken() ? jsonParser.currentToken() : jsonParser.nextToken();
+        if (token != null && this.pointerCount > 0)
+        {
+            new Extraction<>(jsonParser, objectMapper, type, result).visit(this.root, token);
+        }
+        return result;
+    }
+
+    private static class TrieNode
+    {
+        private final Map<String, TrieNode> children = new HashMap<>();
+
+        /**
+         * The pointer ending at this node, or null, if this node is only part of the path to deeper pointers
+         */
+        private JsonPointer pointer;
+    }
+
+    private class Extraction<T>
+    {
+        private final JsonParser          jsonParser;
+        private final ObjectMapper        objectMapper;
+        private final Class<T>            type;
+        private final Map<JsonPointer, T> result;
+
+        private Extraction(JsonParser jsonParser, ObjectMapper objectMapper, Class<T> type, Map<JsonPointer, T> result)
+        {
+            super();
+            this.jsonParser = jsonParser;
+            this.objectMapper = objectMapper;
+            this.type = type;
+            this.result = result;
+        }
+
+        private boolean isComplete()
+        {
+            return this.result.size() == JsonPointerExtractor.this.pointerCount;
+        }
+
+        /**
+         * Visits the value whose first token is the current one
+         *
+         * @param node
+         * @param token
+         * @throws IOException
+         */
+        private void visit(TrieNode node, JsonToken token) throws IOException
+        {
+            if (node.pointer != null)
+            {
+                this.bind(node);
+            }
+            else
+            {
+                this.visitChildren(node, token);
+            }
+        }
+
+        /**
+         * Visits the children of the given node within the value whose first token is the current one
+         *
+         * @param node
+         * @param token
+         * @throws IOException
+         */
+        private void visitChildren(TrieNode node, JsonToken token) throws IOException
+        {
+            if (token == JsonToken.START_OBJECT)
+            {
+                Set<String> visitedNames = new HashSet<>();
+                while (!this.isComplete() && this.jsonParser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String name = this.jsonParser.currentName();
+                    TrieNode child = visitedNames.add(name) ? node.children.get(name) : null;
+                    this.visitOrSkip(child, this.jsonParser.nextToken());
+                }
+            }
+            else if (token == JsonToken.START_ARRAY)
+            {
+                int index = 0;
+                JsonToken elementToken;
+                while (!this.isComplete() && (elementToken = this.jsonParser.nextToken()) != JsonToken.END_ARRAY && elementToken != null)
+                {
+                    TrieNode child = node.children.get(String.valueOf(index++));
+                    this.visitOrSkip(child, elementToken);
+                }
+            }
+            else
+            {
+                this.jsonParser.skipChildren();
+            }
+        }
+
+        private void visitOrSkip(TrieNode child, JsonToken token) throws IOException
+        {
+            if (child != null)
+            {
+                this.visit(child, token);
+            }
+            else
+            {
+                this.jsonParser.skipChildren();
+            }
+        }
+
+        private void bind(TrieNode node) throws IOException
+        {
+            if (node.children.isEmpty())
+            {
+                this.result.put(node.pointer, this.objectMapper.readValue(this.jsonParser, this.type));
+                return;
+            }
+
+            // further pointers lie within this value, so it is buffered, bound, and then visited again for the nested
+            // ones, by the same rules as everything else
+            TokenBuffer buffer = new TokenBuffer(this.jsonParser);
+            buffer.copyCurrentStructure(this.jsonParser);
+            try (JsonParser bufferParser = buffer.asParser(this.objectMapper))
+            {
+                bufferParser.nextToken();
+                this.result.put(node.pointer, this.objectMapper.readValue(bufferParser, this.type));
+            }
+            try (JsonParser bufferParser = buffer.asParser(this.objectMapper))
+            {
+                new Extraction<>(bufferParser, this.objectMapper, this.type, this.result).visitChildren(node, bufferParser.nextToken());
+            }
+        }
+    }
+}
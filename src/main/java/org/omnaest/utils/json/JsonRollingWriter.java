@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes records into a sequence of segment files, starting a new segment once the current one has reached a number
+ * of bytes, a number of records or an age, whichever comes first. Every segment is closed as a complete JSON array or
+ * NDJSON file, as given by the {@link JsonOutputFormat}, so it can be shipped as soon as the next one is started.
+ * <p>
+ * The limits are checked before each record is written, so a segment may exceed the byte limit by the size of its
+ * last record, and a segment is never empty. Closed segments can be gzip compressed on a background thread, which
+ * replaces each segment file by one with the suffix {@code .gz}.
+ * <p>
+ * Not thread safe.
+ *
+ * @author omnaest
+ * @param <T>
+ *            type of the records
+ */
+public class JsonRollingWriter<T> implements Closeable
+{
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final ObjectWriter       objectWriter;
+    private final LongFunction<Path> segmentFileFunction;
+    private final JsonOutputFormat   format;
+
+    private long     maxBytes    = Long.MAX_VALUE;
+    private long     maxRecords  = Long.MAX_VALUE;
+    private Duration maxDuration = null;
+
+    private ExecutorService          compressionExecutor = null;
+    private final List<Future<Path>> compressions        = new ArrayList<>();
+    private final List<Path>         segmentFiles        = new ArrayList<>();
+
+    private long                 segmentIndex = 0;
+    private Path                 segmentFile;
+    private CountingOutputStream outputStream;
+    private JsonGenerator        jsonGenerator;
+    private long                 segmentRecords;
+    private long                 segmentStartTime;
+    private boolean              closed       = false;
+
+    /**
+     * @param objectMapper
+     * @param segmentFileFunction
+     *            returns the file of the segment with a given index, starting at 0
+     * @param format
+     */
+    public JsonRollingWriter(ObjectMapper objectMapper, LongFunction<Path> segmentFileFunction, JsonOutputFormat format)
+    {
+        super();
+        this.objectWriter = objectMapper.writer()
+                                        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.segmentFileFunction = segmentFileFunction;
+        this.format = format;
+    }
+
+    /**
+     * Starts a new segment once the current one has at least the given number of bytes
+     *
+     * @param maxBytes
+     * @return
+     */
+    public JsonRollingWriter<T> withMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Starts a new segment once the current one has the given number of records
+     *
+     * @param maxRecords
+     * @return
+     */
+    public JsonRollingWriter<T> withMaxRecords(long maxRecords)
+    {
+        this.maxRecords = maxRecords;
+        return this;
+    }
+
+    /**
+     * Starts a new segment for a record arriving after the current one has been open for the given {@link Duration}
+     *
+     * @param maxDuration
+     * @return
+     */
+    public JsonRollingWriter<T> withMaxDuration(Duration maxDuration)
+    {
+        this.maxDuration = maxDuration;
+        return this;
+    }
+
+    /**
+     * If true, every closed segment is gzip compressed on a background thread
+     *
+     * @param compress
+     * @return
+     */
+    public JsonRollingWriter<T> withCompression(boolean compress)
+    {
+        if (compress && this.compressionExecutor == null)
+        {
+            this.compressionExecutor = Executors.newSingleThreadExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "json-rolling-writer-compression");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        else if (!compress && this.compressionExecutor != null)
+        {
+            this.compressionExecutor.shutdown();
+            this.compressionExecutor = null;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the given record into the current segment, after starting a new one if any limit has been reached
+     *
+     * @param record
+     * @throws IOException
+     */
+    public void write(T record) throws IOException
+    {
+        if (this.closed)
+        {
+            throw new IllegalStateException("Rolling writer has been closed");
+        }
+        if (this.jsonGenerator != null && this.isSegmentComplete())
+        {
+            this.closeSegment();
+        }
+        if (this.jsonGenerator == null)
+        {
+            this.openSegment();
+        }
+
+        if (this.format == JsonOutputFormat.ARRAY && this.segmentRecords > 0)
+        {
+            this.jsonGenerator.writeRaw(',');
+        }
+        this.objectWriter.writeValue(this.jsonGenerator, record);
+        if (this.format == JsonOutputFormat.NDJSON)
+        {
+            this.jsonGenerator.writeRaw('\n');
+        }
+        this.segmentRecords++;
+    }
+
+    private boolean isSegmentComplete()
+    {
+        return this.segmentRecords >= this.maxRecords || this.outputStream.getCount() + this.jsonGenerator.getOutputBuffered() >= this.maxBytes
+                || (this.maxDuration != null && System.nanoTime() - this.segmentStartTime >= this.maxDuration.toNanos());
+    }
+
+    private void openSegment() throws IOException
+    {
+        this.segmentFile = this.segmentFileFunction.apply(this.segmentIndex++);
+        this.outputStream = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(this.segmentFile)));
+        this.jsonGenerator = this.objectWriter.createGenerator(this.outputStream, JsonEncoding.UTF8)
+                                              .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                                              .setRootValueSeparator(null);
+        if (this.format == JsonOutputFormat.ARRAY)
+        {
+            this.jsonGenerator.writeRaw('[');
+        }
+        this.segmentRecords = 0;
+        this.segmentStartTime = System.nanoTime();
+    }
+
+    private void closeSegment() throws IOException
+    {
+        try
+        {
+            if (this.format == JsonOutputFormat.ARRAY)
+            {
+                this.jsonGenerator.writeRaw(']');
+            }
+
+            // flushes into the stream, which the generator does not close itself
+            this.jsonGenerator.close();
+        }
+        finally
+        {
+            try
+            {
+                this.outputStream.close();
+            }
+            finally
+            {
+                this.outputStream = null;
+                this.jsonGenerator = null;
+            }
+        }
+
+        Path file = this.segmentFile;
+        if (this.compressionExecutor != null)
+        {
+            this.compressions.add(this.compressionExecutor.submit(() -> compress(file)));
+        }
+        else
+        {
+            this.segmentFiles.add(file);
+        }
+    }
+
+    private static Path compress(Path file) throws IOException
+    {
+        Path compressedFile = Paths.get(file.toString() + GZIP_SUFFIX);
+        try (InputStream inputStream = Files.newInputStream(file);
+                OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(compressedFile), 64 * 1024))
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = inputStream.read(buffer)) >= 0)
+            {
+                outputStream.write(buffer, 0, count);
+            }
+        }
+        Files.delete(file);
+        return compressedFile;
+    }
+
+    /**
+     * Returns the files of the segments closed so far, which are the compressed ones only once their compression has
+     * finished
+     *
+     * @return
+     * @throws IOException
+     *             if the compression of a segment failed
+     */
+    public List<Path> getSegmentFiles() throws IOException
+    {
+        List<Path> segmentFiles = new ArrayList<>(this.segmentFiles);
+        for (Future<Path> compression : this.compressions)
+        {
+            if (compression.isDone())
+            {
+                segmentFiles.add(await(compression));
+            }
+        }
+        return Collections.unmodifiableList(segmentFiles);
+    }
+
+    /**
+     * Closes the current segment, and waits for the compression of all segments. Further calls only wait for the
+     * compressions which have not finished successfully before.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.closed = true;
+        try
+        {
+            if (this.jsonGenerator != null)
+            {
+                this.closeSegment();
+            }
+            Iterator<Future<Path>> iterator = this.compressions.iterator();
+            while (iterator.hasNext())
+            {
+                this.segmentFiles.add(await(iterator.next()));
+                iterator.remove();
+            }
+        }
+        finally
+        {
+            this.withCompression(false);
+        }
+    }
+
+    private static Path await(Future<Path> compression) throws IOException
+    {
+        try
+        {
+            return compression.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IOException("Interrupted while waiting for the compression of a segment", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * {@link OutputStream} counting the bytes written through it
+     *
+     * @author omnaest
+     */
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private long count = 0;
+
+        private CountingOutputStream(OutputStream outputStream)
+        {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int data) throws IOException
+        {
+            this.out.write(data);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException
+        {
+            this.out.write(data, offset, length);
+            this.count += length;
+        }
+
+        public long getCount()
+        {
+            return this.count;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Finds the next byte of one or more classes of JSON structural characters within UTF-8 encoded JSON, which is what
+ * locating string ends, literal ends and element boundaries boils down to.
+ * <p>
+ * The {@link #swar()} implementation classifies eight bytes per step, by reading them as one {@code long} and
+ * testing all of them against a character class with a few arithmetic operations (SIMD within a register). The
+ * {@link #scalar()} implementation tests one byte at a time against a lookup table, and serves as the reference the
+ * other one has to be equivalent to. {@link #getDefault()} is the SWAR one, unless the system property
+ * {@value #IMPLEMENTATION_PROPERTY} is set to {@code scalar}.
+ * <p>
+ * Only ASCII bytes are ever classified, so the multi-byte sequences of non ASCII characters are never mistaken for
+ * structural characters.
+ *
+ * @author omnaest
+ */
+public abstract class JsonStructuralScanner
+{
+    public static final int CLASS_QUOTE      = 1;
+    public static final int CLASS_BACKSLASH  = 1 << 1;
+    public static final int CLASS_BRACE      = 1 << 2;
+    public static final int CLASS_BRACKET    = 1 << 3;
+    public static final int CLASS_COMMA      = 1 << 4;
+    public static final int CLASS_COLON      = 1 << 5;
+
+    /**
+     * Whitespace, and with it every other control character, which is every byte up to 0x20
+     */
+    public static final int CLASS_WHITESPACE = 1 << 6;
+
+    /**
+     * All classes that end a literal like a number, true, false or null
+     */
+    public static final int CLASSES_LITERAL_DELIMITER = CLASS_QUOTE | CLASS_BRACE | CLASS_BRACKET | CLASS_COMMA | CLASS_COLON | CLASS_WHITESPACE;
+
+    public static final String IMPLEMENTATION_PROPERTY = "org.omnaest.utils.json.scanner";
+
+    /**
+     * Returns the index of the first byte within the given range that belongs to any of the given character classes
+     *
+     * @param data
+     * @param fromIndex
+     *            inclusive
+     * @param toIndex
+     *            exclusive
+     * @param characterClasses
+     *            bitwise or of the {@code CLASS_...} constants
+     * @return the toIndex, if there is no such byte
+     */
+    public abstract int indexOf(byte[] data, int fromIndex, int toIndex, int characterClasses);
+
+    /**
+     * Returns the index behind the closing quote of the string whose opening quote is at the given index, honoring
+     * backslash escapes
+     *
+     * @param data
+     * @param quoteIndex
+     * @param toIndex
+     *            exclusive
+     * @return -1, if the string is not terminated before the toIndex
+     */
+    public int indexOfStringEnd(byte[] data, int quoteIndex, int toIndex)
+    {
+        int index = this.indexOf(data, quoteIndex + 1, toIndex, CLASS_QUOTE | CLASS_BACKSLASH);
+        while (index < toIndex && data[index] == '\\')
+        {
+            // skips the escaped character, which might be a quote itself
+            index = this.indexOf(data, index + 2, toIndex, CLASS_QUOTE | CLASS_BACKSLASH);
+        }
+        return index < toIndex ? index + 1 : -1;
+    }
+
+    public static JsonStructuralScanner getDefault()
+    {
+        return "scalar".equalsIgnoreCase(System.getProperty(IMPLEMENTATION_PROPERTY)) ? scalar() : swar();
+    }
+
+    public static JsonStructuralScanner scalar()
+    {
+        return ScalarScanner.INSTANCE;
+    }
+
+    public static JsonStructuralScanner swar()
+    {
+        return SwarScanner.INSTANCE;
+    }
+
+    /**
+     * Returns the character classes of the given byte
+     *
+     * @param character
+     * @return
+     */
+    public static int classify(byte character)
+    {
+        return ScalarScanner.CLASSES[character & 0xFF];
+    }
+
+    /**
+     * Byte at a time reference implementation
+     *
+     * @author omnaest
+     */
+    private static final class ScalarScanner extends JsonStructuralScanner
+    {
+        private static final ScalarScanner INSTANCE = new ScalarScanner();
+
+        private static final byte[] CLASSES = new byte[256];
+
+        static
+        {
+            CLASSES['"'] = CLASS_QUOTE;
+            CLASSES['\\'] = CLASS_BACKSLASH;
+            CLASSES['{'] = CLASS_BRACE;
+            CLASSES['}'] = CLASS_BRACE;
+            CLASSES['['] = CLASS_BRACKET;
+            CLASSES[']'] = CLASS_BRACKET;
+            CLASSES[','] = CLASS_COMMA;
+            CLASSES[':'] = CLASS_COLON;
+            for (int ii = 0; ii <= ' '; ii++)
+            {
+                CLASSES[ii] = CLASS_WHITESPACE;
+            }
+        }
+
+        @Override
+        public int indexOf(byte[] data, int fromIndex, int toIndex, int characterClasses)
+        {
+            int index = fromIndex;
+            while (index < toIndex && (CLASSES[data[index] & 0xFF] & characterClasses) == 0)
+            {
+                index++;
+            }
+            return Math.min(index, toIndex);
+        }
+    }
+
+    /**
+     * Eight bytes at a time implementation, based on the classic zero byte detection: for {@code x = word ^ pattern},
+     * {@code (x - 0x01..01) & ~x & 0x80..80} has the high bit set at the lowest byte of the word that equals the
+     * pattern byte. Bytes above that one can be flagged falsely by the borrow, which does not matter, since only the
+     * lowest flagged byte is ever used. Words are read little endian, so the lowest byte is the first one.
+     *
+     * @author omnaest
+     */
+    private static final class SwarScanner extends JsonStructuralScanner
+    {
+        private static final SwarScanner INSTANCE = new SwarScanner();
+
+        private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private static final long ONES  = 0x0101010101010101L;
+        private static final long HIGHS = 0x8080808080808080L;
+
+        private static final long QUOTES         = ONES * '"';
+        private static final long BACKSLASHES    = ONES * '\\';
+        private static final long OPEN_BRACES    = ONES * '{';
+        private static final long CLOSE_BRACES   = ONES * '}';
+        private static final long OPEN_BRACKETS  = ONES * '[';
+        private static final long CLOSE_BRACKETS = ONES * ']';
+        private static final long COMMAS         = ONES * ',';
+        private static final long COLONS         = ONES * ':';
+
+        /**
+         * Subtracting this flags every byte below 0x21, which is the whitespace class
+         */
+        private static final long WHITESPACE_BOUNDS = ONES * 0x21;
+
+        @Override
+        public int indexOf(byte[] data, int fromIndex, int toIndex, int characterClasses)
+        {
+            int index = fromIndex;
+            for (; index + Long.BYTES <= toIndex; index += Long.BYTES)
+            {
+                long word = (long) LONG_VIEW.get(data, index);
+                long matches = 0;
+                if ((characterClasses & CLASS_QUOTE) != 0)
+                {
+                    matches |= equalBytes(word, QUOTES);
+                }
+                if ((characterClasses & CLASS_BACKSLASH) != 0)
+                {
+                    matches |= equalBytes(word, BACKSLASHES);
+                }
+                if ((characterClasses & CLASS_BRACE) != 0)
+                {
+                    matches |= equalBytes(word, OPEN_BRACES) | equalBytes(word, CLOSE_BRACES);
+                }
+                if ((characterClasses & CLASS_BRACKET) != 0)
+                {
+                    matches |= equalBytes(word, OPEN_BRACKETS) | equalBytes(word, CLOSE_BRACKETS);
+                }
+                if ((characterClasses & CLASS_COMMA) != 0)
+                {
+                    matches |= equalBytes(word, COMMAS);
+                }
+                if ((characterClasses & CLASS_COLON) != 0)
+                {
+                    matches |= equalBytes(word, COLONS);
+                }
+                if ((characterClasses & CLASS_WHITESPACE) != 0)
+                {
+                    matches |= (word - WHITESPACE_BOUNDS) & ~word & HIGHS;
+                }
+
+                if (matches != 0)
+                {
+                    return index + (Long.numberOfTrailingZeros(matches) >>> 3);
+                }
+            }
+            return ScalarScanner.INSTANCE.indexOf(data, index, toIndex, characterClasses);
+        }
+
+        private static long equalBytes(long word, long pattern)
+        {
+            long difference = word ^ pattern;
+            return (difference - ONES) & ~difference & HIGHS;
+        }
+    }
+}
@@ -0,0 +1,543 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Lazily decoded JSON document over UTF-8 bytes.
+ * <p>
+ * A single structural pass over the bytes, driven by the {@link JsonStructuralScanner}, records a "tape": one entry
+ * per object, array, field name and scalar value, holding its kind, its start and end offset within the bytes and,
+ * for containers, the index of the first entry behind it. Nothing is decoded during that pass. A lookup by JSON pointer then walks the tape, jumping over whole
+ * subtrees that are not on its path, and only the value it ends up at is decoded - by the {@link ObjectMapper}
+ * directly from the original bytes.
+ * <p>
+ * The structural pass checks brackets, braces, separators and string boundaries, but not the content of scalar
+ * values; an invalid literal, like {@code tru}, is only reported once it is decoded. Thread safe, since it is
+ * immutable once indexed.
+ *
+ * @see #of(byte[], ObjectMapper)
+ * @author omnaest
+ */
+public class JsonTapeDocument
+{
+    private static final byte KIND_OBJECT = 0;
+    private static final byte KIND_ARRAY  = 1;
+    private static final byte KIND_KEY    = 2;
+    private static final byte KIND_STRING = 3;
+    private static final byte KIND_SCALAR = 4;
+
+    private final byte[]       data;
+    private final ObjectMapper objectMapper;
+
+    private final byte[] kinds;
+    private final int[]  starts;
+    private final int[]  ends;
+
+    /**
+     * Index of the first entry behind the subtree of an entry, which for scalars and keys is simply the next entry
+     */
+    private final int[] nexts;
+
+    private JsonTapeDocument(byte[] data, ObjectMapper objectMapper, byte[] kinds, int[] starts, int[] ends, int[] nexts)
+    {
+        super();
+        this.data = data;
+        this.objectMapper = objectMapper;
+        this.kinds = kinds;
+        this.starts = starts;
+        this.ends = ends;
+        this.nexts = nexts;
+    }
+
+    /**
+     * Indexes the given UTF-8 encoded JSON document. The given array is used as it is, not copied, so it must not be
+     * modified afterwards.
+     *
+     * @param data
+     * @param objectMapper
+     *            the {@link ObjectMapper} values are decoded with
+     * @return
+     * @throws IllegalArgumentException
+     *             if the structure of the document is invalid
+     */
+    public static JsonTapeDocument of(byte[] data, ObjectMapper objectMapper)
+    {
+        return new TapeBuilder(data).build(objectMapper);
+    }
+
+    /**
+     * Returns the number of tape entries
+     *
+     * @return
+     */
+    public int getEntryCount()
+    {
+        return this.kinds.length;
+    }
+
+    /**
+     * Returns true, if the given JSON pointer resolves to a value
+     *
+     * @param jsonPointer
+     * @return
+     */
+    public boolean has(String jsonPointer)
+    {
+        return this.resolve(JsonPointer.compile(jsonPointer)) >= 0;
+    }
+
+    /**
+     * Decodes the value at the given JSON pointer into the given type
+     *
+     * @param jsonPointer
+     * @param type
+     * @return {@link Optional#empty()} if the pointer does not resolve to a value
+     */
+    public <T> Optional<T> get(String jsonPointer, Class<T> type)
+    {
+        return this.get(JsonPointer.compile(jsonPointer), type);
+    }
+
+    public <T> Optional<T> get(JsonPointer jsonPointer, Class<T> type)
+    {
+        int entry = this.resolve(jsonPointer);
+        if (entry < 0)
+        {
+            return Optional.empty();
+        }
+
+        try
+        {
+            return Optional.ofNullable(this.objectMapper.readValue(this.data, this.starts[entry], this.ends[entry] - this.starts[entry], type));
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the value at the given JSON pointer as text, like {@link JsonNode#asText()} would
+     *
+     * @param jsonPointer
+     * @return
+     */
+    public Optional<String> getText(String jsonPointer)
+    {
+        return this.getNode(jsonPointer)
+                   .map(JsonNode::asText);
+    }
+
+    /**
+     * Returns the value at the given JSON pointer as {@link JsonNode}, which only decodes the subtree of that value
+     *
+     * @param jsonPointer
+     * @return
+     */
+    public Optional<JsonNode> getNode(String jsonPointer)
+    {
+        return this.get(jsonPointer, JsonNode.class);
+    }
+
+    /**
+     * Returns the raw JSON of the value at the given JSON pointer, as it is written within the document
+     *
+     * @param jsonPointer
+     * @return
+     */
+    public Optional<String> getRaw(String jsonPointer)
+    {
+        int entry = this.resolve(JsonPointer.compile(jsonPointer));
+        return entry >= 0 ? Optional.of(new String(this.data, this.starts[entry], this.ends[entry] - this.starts[entry], StandardCharsets.UTF_8))
+                : Optional.empty();
+    }
+
+    /**
+     * Returns the number of fields of an object or elements of an array at the given JSON pointer, or 0 for any other
+     * value, without decoding any of them
+     *
+     * @param jsonPointer
+     * @return {@link Optional#empty()} if the pointer does not resolve to a value
+     */
+    public Optional<Integer> size(String jsonPointer)
+    {
+        int entry = this.resolve(JsonPointer.compile(jsonPointer));
+        if (entry < 0)
+        {
+            return Optional.empty();
+        }
+
+        int size = 0;
+        if (this.isContainer(entry))
+        {
+            int increment = this.kinds[entry] == KIND_OBJECT ? 2 : 1;
+            for (int child = entry + 1; child < this.nexts[entry]; child = this.nexts[child + increment - 1])
+            {
+                size++;
+            }
+        }
+        return Optional.of(size);
+    }
+
+    /**
+     * Returns the field names of the object at the given JSON pointer in document order
+     *
+     * @param jsonPointer
+     * @return {@link Optional#empty()} if the pointer does not resolve to an object
+     */
+    public Optional<List<String>> getFieldNames(String jsonPointer)
+    {
+        int entry = this.resolve(JsonPointer.compile(jsonPointer));
+        if (entry < 0 || this.kinds[entry] != KIND_OBJECT)
+        {
+            return Optional.empty();
+        }
+
+        List<String> fieldNames = new ArrayList<>();
+        for (int key = entry + 1; key < this.nexts[entry]; key = this.nexts[key + 1])
+        {
+            fieldNames.add(this.decodeKey(key));
+        }
+        return Optional.of(fieldNames);
+    }
+
+    /**
+     * Returns the tape entry the given pointer resolves to, or -1
+     */
+    private int resolve(JsonPointer jsonPointer)
+    {
+        int entry = this.kinds.length > 0 ? 0 : -1;
+        for (JsonPointer pointer = jsonPointer; entry >= 0 && !pointer.matches(); pointer = pointer.tail())
+        {
+            if (this.kinds[entry] == KIND_OBJECT)
+            {
+                entry = this.findField(entry, pointer.getMatchingProperty());
+            }
+            else if (this.kinds[entry] == KIND_ARRAY)
+            {
+                entry = this.findElement(entry, pointer.getMatchingIndex());
+            }
+            else
+            {
+                entry = -1;
+            }
+        }
+        return entry;
+    }
+
+    private int findField(int objectEntry, String fieldName)
+    {
+        byte[] fieldNameBytes = fieldName.getBytes(StandardCharsets.UTF_8);
+        int result = -1;
+        for (int key = objectEntry + 1; key < this.nexts[objectEntry]; key = this.nexts[key + 1])
+        {
+            if (this.matchesKey(key, fieldName, fieldNameBytes))
+            {
+                // no early return: for duplicate field names the last one wins, as for JsonNode trees
+                result = key + 1;
+            }
+        }
+        return result;
+    }
+
+    private int findElement(int arrayEntry, int index)
+    {
+        if (index < 0)
+        {
+            return -1;
+        }
+
+        int element = arrayEntry + 1;
+        for (int ii = 0; ii < index && element < this.nexts[arrayEntry]; ii++)
+        {
+            element = this.nexts[element];
+        }
+        return element < this.nexts[arrayEntry] ? element : -1;
+    }
+
+    private boolean matchesKey(int key, String fieldName, byte[] fieldNameBytes)
+    {
+        int start = this.starts[key] + 1;
+        int end = this.ends[key] - 1;
+        boolean hasEscapes = false;
+        for (int ii = start; ii < end && !hasEscapes; ii++)
+        {
+            hasEscapes = this.data[ii] == '\\';
+        }
+
+        if (hasEscapes)
+        {
+            return fieldName.equals(this.decodeKey(key));
+        }
+        return Arrays.equals(this.data, start, end, fieldNameBytes, 0, fieldNameBytes.length);
+    }
+
+    private String decodeKey(int key)
+    {
+        try (JsonParser jsonParser = this.objectMapper.getFactory()
+                                                      .createParser(this.data, this.starts[key], this.ends[key] - this.starts[key]))
+        {
+            jsonParser.nextToken();
+            return jsonParser.getText();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean isContainer(int entry)
+    {
+        return this.kinds[entry] == KIND_OBJECT || this.kinds[entry] == KIND_ARRAY;
+    }
+
+    /**
+     * Single structural pass over the bytes of a document, which records the tape entries
+     *
+     * @author omnaest
+     */
+    private static class TapeBuilder
+    {
+        private static final int EXPECT_VALUE          = 0;
+        private static final int EXPECT_VALUE_OR_END   = 1;
+        private static final int EXPECT_KEY            = 2;
+        private static final int EXPECT_KEY_OR_END     = 3;
+        private static final int EXPECT_SEPARATOR      = 4;
+        private static final int EXPECT_NAME_SEPARATOR = 5;
+
+        private final byte[]                data;
+        private final JsonStructuralScanner scanner = JsonStructuralScanner.getDefault();
+
+        private byte[] kinds  = new byte[64];
+        private int[]  starts = new int[64];
+        private int[]  ends   = new int[64];
+        private int[]  nexts  = new int[64];
+        private int    entryCount;
+
+        private int[] openContainers = new int[16];
+        private int   depth;
+
+        private TapeBuilder(byte[] data)
+        {
+            super();
+            this.data = data;
+        }
+
+        @SuppressWarnings("fallthrough")
+        private JsonTapeDocument build(ObjectMapper objectMapper)
+        {
+            int position = this.skipByteOrderMark();
+            int state = EXPECT_VALUE;
+            for (position = skipWhitespace(this.data, position); position < this.data.length; position = skipWhitespace(this.data, position))
+            {
+                byte character = this.data[position];
+                switch (state)
+                {
+                    case EXPECT_VALUE_OR_END:
+                        if (character == ']')
+                        {
+                            position = this.closeContainer(position, KIND_ARRAY);
+                            state = EXPECT_SEPARATOR;
+                            break;
+                        }
+                        // fall through
+                    case EXPECT_VALUE:
+                        if (character == '{' || character == '[')
+                        {
+                            byte kind = character == '{' ? KIND_OBJECT : KIND_ARRAY;
+                            this.openContainer(this.addEntry(kind, position, position));
+                            state = kind == KIND_OBJECT ? EXPECT_KEY_OR_END : EXPECT_VALUE_OR_END;
+                            position++;
+                        }
+                        else if (character == '"')
+                        {
+                            int end = this.findStringEnd(position);
+                            this.addEntry(KIND_STRING, position, end);
+                            state = EXPECT_SEPARATOR;
+                            position = end;
+                        }
+                        else
+                        {
+                            int end = this.findScalarEnd(position);
+                            this.addEntry(KIND_SCALAR, position, end);
+                            state = EXPECT_SEPARATOR;
+                            position = end;
+                        }
+                        break;
+                    case EXPECT_KEY_OR_END:
+                        if (character == '}')
+                        {
+                            position = this.closeContainer(position, KIND_OBJECT);
+                            state = EXPECT_SEPARATOR;
+                            break;
+                        }
+                        // fall through
+                    case EXPECT_KEY:
+                        if (character != '"')
+                        {
+                            throw this.newStructureException("Expected a field name", position);
+                        }
+                        int keyEnd = this.findStringEnd(position);
+                        this.addEntry(KIND_KEY, position, keyEnd);
+                        state = EXPECT_NAME_SEPARATOR;
+                        position = keyEnd;
+                        break;
+                    case EXPECT_NAME_SEPARATOR:
+                        if (character != ':')
+                        {
+                            throw this.newStructureException("Expected ':'", position);
+                        }
+                        state = EXPECT_VALUE;
+                        position++;
+                        break;
+                    default:
+                        if (this.depth == 0)
+                        {
+                            throw this.newStructureException("Unexpected content behind the root value", position);
+                        }
+                        byte containerKind = this.kinds[this.openContainers[this.depth - 1]];
+                        if (character == ',')
+                        {
+                            state = containerKind == KIND_OBJECT ? EXPECT_KEY : EXPECT_VALUE;
+                            position++;
+                        }
+                        else if (character == '}' || character == ']')
+                        {
+                            position = this.closeContainer(position, character == '}' ? KIND_OBJECT : KIND_ARRAY);
+                        }
+                        else
+                        {
+                            throw this.newStructureException("Expected ',' or the end of the " + (containerKind == KIND_OBJECT ? "object" : "array"),
+                                                              position);
+                        }
+                        break;
+                }
+            }
+
+            if (this.depth > 0 || state != EXPECT_SEPARATOR)
+            {
+                throw this.newStructureException("Unexpected end of input", position);
+            }
+
+            return new JsonTapeDocument(this.data, objectMapper, Arrays.copyOf(this.kinds, this.entryCount), Arrays.copyOf(this.starts, this.entryCount),
+                                        Arrays.copyOf(this.ends, this.entryCount), Arrays.copyOf(this.nexts, this.entryCount));
+        }
+
+        private int skipByteOrderMark()
+        {
+            boolean hasByteOrderMark = this.data.length >= 3 && (this.data[0] & 0xFF) == 0xEF && (this.data[1] & 0xFF) == 0xBB
+                    && (this.data[2] & 0xFF) == 0xBF;
+            return hasByteOrderMark ? 3 : 0;
+        }
+
+        private int addEntry(byte kind, int start, int end)
+        {
+            if (this.entryCount == this.kinds.length)
+            {
+                int capacity = this.entryCount * 2;
+                this.kinds = Arrays.copyOf(this.kinds, capacity);
+                this.starts = Arrays.copyOf(this.starts, capacity);
+                this.ends = Arrays.copyOf(this.ends, capacity);
+                this.nexts = Arrays.copyOf(this.nexts, capacity);
+            }
+            this.kinds[this.entryCount] = kind;
+            this.starts[this.entryCount] = start;
+            this.ends[this.entryCount] = end;
+            this.nexts[this.entryCount] = this.entryCount + 1;
+            return this.entryCount++;
+        }
+
+        private void openContainer(int entry)
+        {
+            if (this.depth == this.openContainers.length)
+            {
+                this.openContainers = Arrays.copyOf(this.openContainers, this.depth * 2);
+            }
+            this.openContainers[this.depth++] = entry;
+        }
+
+        private int closeContainer(int position, byte kind)
+        {
+            if (this.depth == 0 || this.kinds[this.openContainers[this.depth - 1]] != kind)
+            {
+                throw this.newStructureException("Unexpected '" + (char) this.data[position] + "'", position);
+            }
+
+            int entry = this.openContainers[--this.depth];
+            this.ends[entry] = position + 1;
+            this.nexts[entry] = this.entryCount;
+            return position + 1;
+        }
+
+        /**
+         * Returns the offset behind the closing quote of the string starting at the given offset
+         */
+        private int findStringEnd(int position)
+        {
+            int end = this.scanner.indexOfStringEnd(this.data, position, this.data.length);
+            if (end < 0)
+            {
+                throw this.newStructureException("Unterminated string", position);
+            }
+            return end;
+        }
+
+        /**
+         * Returns the offset behind the literal starting at the given offset
+         */
+        private int findScalarEnd(int position)
+        {
+            int end = this.scanner.indexOf(this.data, position, this.data.length, JsonStructuralScanner.CLASSES_LITERAL_DELIMITER);
+            if (end == position)
+            {
+                throw this.newStructureException("Unexpected '" + (char) this.data[position] + "'", position);
+            }
+            return end;
+        }
+
+        private IllegalArgumentException newStructureException(String message, int position)
+        {
+            return new IllegalArgumentException(message + " at byte offset " + position);
+        }
+    }
+
+    private static int skipWhitespace(byte[] data, int position)
+    {
+        while (position < data.length && isWhitespace(data[position]))
+        {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isWhitespace(byte character)
+    {
+        return character == ' ' || character == '\n' || character == '\r' || character == '\t';
+    }
+}
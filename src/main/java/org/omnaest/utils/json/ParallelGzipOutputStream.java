@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+
+package org.omnaest.utils.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * {@link OutputStream} writing a standard gzip stream, like {@link java.util.zip.GZIPOutputStream}, but compressing
+ * blocks of the data in parallel, in the manner of pigz.
+ * <p>
+ * The data is cut into blocks, each of which is deflated by its own raw {@link Deflater} within an
+ * {@link ExecutorService}. Every block but the last ends with a sync flush, which aligns it to a byte boundary, so the
+ * compressed blocks simply concatenate into one deflate stream, which only the last block finishes. Every block is
+ * primed with the last 32 KiB of the previous one as dictionary, so back references across the block boundaries keep
+ * the compression ratio close to the one of a single deflater. The CRC-32 of the gzip trailer is computed sequentially
+ * while the blocks are handed out, and the compressed blocks are written in order, with a bounded number of blocks in
+ * flight.
+ * <p>
+ * Not thread safe.
+ *
+ * @author omnaest
+ */
+public class ParallelGzipOutputStream extends OutputStream
+{
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int    DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER          = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final OutputStream    outputStream;
+    private final ExecutorService executorService;
+    private final int             level;
+    private final int             maxPendingBlocks;
+
+    private final CRC32                 crc           = new CRC32();
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    private byte[]  block;
+    private int     blockLength    = 0;
+    private byte[]  previousBlock  = null;
+    private int     previousLength = 0;
+    private long    size           = 0;
+    private boolean finished       = false;
+
+    public ParallelGzipOutputStream(OutputStream outputStream) throws IOException
+    {
+        this(outputStream, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param outputStream
+     * @param level
+     *            the {@link Deflater} compression level
+     * @param blockSize
+     *            the number of uncompressed bytes per block
+     * @param executorService
+     *            runs the compression of the blocks
+     * @throws IOException
+     */
+    public ParallelGzipOutputStream(OutputStream outputStream, int level, int blockSize, ExecutorService executorService) throws IOException
+    {
+        super();
+        if (blockSize < 1)
+        {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.outputStream = outputStream;
+        this.executorService = executorService;
+        this.level = level;
+        this.maxPendingBlocks = 2 * Runtime.getRuntime()
+                                           .availableProcessors();
+        this.block = new byte[blockSize];
+        this.outputStream.write(HEADER);
+    }
+
+    @Override
+    public void write(int data) throws IOException
+    {
+        this.write(new byte[] { (byte) data }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException
+    {
+        this.assertNotFinished();
+        while (length > 0)
+        {
+            int count = Math.min(length, this.block.length - this.blockLength);
+            System.arraycopy(data, offset, this.block, this.blockLength, count);
+            this.blockLength += count;
+            offset += count;
+            length -= count;
+            if (this.blockLength == this.block.length)
+            {
+                this.submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all completed blocks into the underlying {@link OutputStream} before flushing it. Like a
+     * {@link java.util.zip.GZIPOutputStream} without sync flush, the data of the incomplete block stays buffered, as
+     * e.g. a {@link com.fasterxml.jackson.core.JsonGenerator} flushes after every value, which would otherwise end up
+     * in a block of its own.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        this.assertNotFinished();
+        this.writePendingBlocks(0);
+        this.outputStream.flush();
+    }
+
+    /**
+     * Finishes the gzip stream without closing the underlying {@link OutputStream}
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException
+    {
+        if (!this.finished)
+        {
+            this.submitBlock(true);
+            this.writePendingBlocks(0);
+            writeIntLittleEndian(this.outputStream, (int) this.crc.getValue());
+            writeIntLittleEndian(this.outputStream, (int) this.size);
+            this.outputStream.flush();
+            this.finished = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            this.finish();
+        }
+        finally
+        {
+            this.outputStream.close();
+        }
+    }
+
+    private void assertNotFinished() throws IOException
+    {
+        if (this.finished)
+        {
+            throw new IOException("Gzip stream has already been finished");
+        }
+    }
+
+    private void submitBlock(boolean last) throws IOException
+    {
+        byte[] data = this.block;
+        int length = this.blockLength;
+        byte[] dictionary = this.previousBlock;
+        int dictionaryEnd = this.previousLength;
+        int level = this.level;
+        this.crc.update(data, 0, length);
+        this.size += length;
+        this.pendingBlocks.add(this.executorService.submit(() -> deflate(data, length, dictionary, dictionaryEnd, level, last)));
+
+        this.previousBlock = data;
+        this.previousLength = length;
+        this.block = last ? null : new byte[data.length];
+        this.blockLength = 0;
+
+        this.writePendingBlocks(this.maxPendingBlocks);
+    }
+
+    /**
+     * Writes the compressed blocks in order, waiting for them until at most the given number is pending, and beyond
+     * that as long as they are done already
+     *
+     * @param maxPendingBlocks
+     * @throws IOException
+     */
+    private void writePendingBlocks(int maxPendingBlocks) throws IOException
+    {
+        while (!this.pendingBlocks.isEmpty() && (this.pendingBlocks.size() > maxPendingBlocks || this.pendingBlocks.peek()
+                                                                                                                      .isDone()))
+        {
+            try
+            {
+                this.outputStream.write(this.pendingBlocks.poll()
+                                                          .get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IOException("Interrupted while compressing", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IOException("Failed to compress block", e.getCause());
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] data, int length, byte[] dictionary, int dictionaryEnd, int level, boolean last)
+    {
+        Deflater deflater = new Deflater(level, true);
+        try
+        {
+            if (dictionary != null && dictionaryEnd > 0)
+            {
+                int dictionaryLength = Math.min(DICTIONARY_SIZE, dictionaryEnd);
+                deflater.setDictionary(dictionary, dictionaryEnd - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(data, 0, length);
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[Math.max(1024, length / 2 + 64)];
+            if (last)
+            {
+                deflater.finish();
+                while (!deflater.finished())
+                {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            }
+            else
+            {
+                // a sync flush has to be repeated as long as it fills the whole buffer
+                int count;
+                do
+                {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                }
+                while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static void writeIntLittleEndian(OutputStream outputStream, int value) throws IOException
+    {
+        outputStream.write(value & 0xFF);
+        outputStream.write((value >>> 8) & 0xFF);
+        outputStream.write((value >>> 16) & 0xFF);
+        outputStream.write((value >>> 24) & 0xFF);
+    }
+}
@@ -9,25 +9,68 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.Test;
+import org.omnaest.utils.json.JsonAggregation;
+import org.omnaest.utils.json.JsonArrayCheckpoint;
+import org.omnaest.utils.json.JsonArrayElement;
+import org.omnaest.utils.json.JsonArrayHashIndex;
+import org.omnaest.utils.json.JsonArrayOffsetIndex;
+import org.omnaest.utils.json.JsonArraySplitter;
+import org.omnaest.utils.json.JsonColumnarTable;
+import org.omnaest.utils.json.JsonCompactTree;
+import org.omnaest.utils.json.JsonCompression;
+import org.omnaest.utils.json.JsonHashJoin;
+import org.omnaest.utils.json.JsonKeyDictionary;
+import org.omnaest.utils.json.JsonOutputFormat;
+import org.omnaest.utils.json.JsonPartitionedWriter;
+import org.omnaest.utils.json.JsonRollingWriter;
+import org.omnaest.utils.json.JsonTapeDocument;
+import org.omnaest.utils.json.ParallelGzipOutputStream;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class JsonUtilsTest
@@ -41,6 +84,96 @@ public class JsonUtilsTest
         assertEquals("value1", domain.getField1());
     }
 
+    /**
+     * Plain beans are bound directly by the {@link org.omnaest.utils.json.JsonBeanBinder} rather than through
+     * {@link ObjectMapper#convertValue(Object, Class)}, which both directions have to be indistinguishable from -
+     * including the number types within the {@link Map} and the nested bean and list values.
+     */
+    @Test
+    public void testToMapAndToObjectWithTypeOfPlainBeanMatchConvertValue() throws Exception
+    {
+        PlainBean bean = new PlainBean();
+        bean.setText("value1");
+        bean.setIntValue(1);
+        bean.setLongValue(1L << 40);
+        bean.setDoubleValue(2.5);
+        bean.setFlag(true);
+        bean.setMode(PlainMode.SECOND);
+        bean.setTags(Arrays.asList("a", "b"));
+        bean.setChild(new PlainBean());
+        bean.getChild()
+            .setText("child");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> map = JsonUtils.toMap(bean);
+        assertEquals(objectMapper.convertValue(bean, Map.class), map);
+        assertEquals(objectMapper.convertValue(bean, Map.class)
+                                 .keySet()
+                                 .toString(),
+                     map.keySet()
+                        .toString());
+
+        PlainBean boundBean = JsonUtils.toObjectWithType(map, PlainBean.class);
+        assertEquals(JsonUtils.serialize(objectMapper.convertValue(map, PlainBean.class)), JsonUtils.serialize(boundBean));
+        assertEquals(JsonUtils.serialize(bean), JsonUtils.serialize(boundBean));
+    }
+
+    /**
+     * A null for a primitive property assigns the primitive default, overriding the initial value of the field, like
+     * Jackson does.
+     */
+    @Test
+    public void testToObjectWithTypeOfPlainBeanCoercesNumbersAndAssignsDefaultForNullPrimitives() throws Exception
+    {
+        Map<String, Object> map = new HashMap<>();
+        map.put("longValue", 5);
+        map.put("doubleValue", 3);
+        map.put("intValue", null);
+        map.put("mode", "FIRST");
+
+        PlainBean bean = JsonUtils.toObjectWithType(map, PlainBean.class);
+        assertEquals(5L, bean.getLongValue());
+        assertEquals(3.0, bean.getDoubleValue(), 0.0);
+        assertEquals(0, bean.getIntValue());
+        assertEquals(PlainMode.FIRST, bean.getMode());
+
+        assertEquals(5, new PlainBean().getIntValue());
+        PlainBean readBean = new ObjectMapper().readValue(JsonUtils.serialize(map), PlainBean.class);
+        assertEquals(JsonUtils.serialize(readBean), JsonUtils.serialize(bean));
+    }
+
+    /**
+     * A cycle of plain beans fails like it does within Jackson, instead of overflowing the stack.
+     */
+    @Test
+    public void testToMapOfPlainBeanCycleFailsLikeConvertValue() throws Exception
+    {
+        PlainBean bean = new PlainBean();
+        bean.setChild(new PlainBean());
+        bean.getChild()
+            .setChild(bean);
+
+        assertThrows(IllegalArgumentException.class, () -> new ObjectMapper().convertValue(bean, Map.class));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> JsonUtils.toMap(bean));
+        assertTrue(exception.getCause() instanceof JsonMappingException);
+
+        bean.getChild()
+            .setChild(null);
+        assertEquals(new ObjectMapper().convertValue(bean, Map.class), JsonUtils.toMap(bean));
+    }
+
+    /**
+     * A key without a matching property is left to Jackson, which rejects it as it always did.
+     */
+    @Test
+    public void testToObjectWithTypeOfPlainBeanFailsOnUnknownPropertyLikeConvertValue() throws Exception
+    {
+        Map<String, Object> map = new HashMap<>();
+        map.put("unknown", "value1");
+
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.toObjectWithType(map, PlainBean.class));
+    }
+
     @Test
     public void testClone() throws Exception
     {
@@ -67,6 +200,15 @@ public class JsonUtilsTest
                                                                  .replaceAll("[\\n\\r]+", "\n"));
     }
 
+    @Test
+    public void testMinifyRemovesWhitespaceOutsideOfStringsOnly() throws Exception
+    {
+        assertEquals("{\"a b\":[1,2,{\"c\":\" \\\" x \"}],\"\u00e4\":\"\\\\\"}", JsonUtils.minify("{ \"a b\" : [ 1 ,\n\t2, { \"c\" : \" \\\" x \" } ] ,\r\n \"\u00e4\" : \"\\\\\" }"));
+        assertEquals(JsonUtils.serialize(new Domain("value1")), JsonUtils.minify(JsonUtils.prettyPrint(new Domain("value1"))));
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.minify("{\"a\": \"open}"));
+        assertNull(JsonUtils.minify((String) null));
+    }
+
     @Test
     public void testSerializeObject() throws Exception
     {
@@ -203,6 +345,978 @@ public class JsonUtilsTest
         assertThrows(NoSuchElementException.class, () -> iterator.next());
     }
 
+    @Test
+    public void testReadObjectEntriesFromReader() throws Exception
+    {
+        AtomicBoolean closed = new AtomicBoolean();
+        StringReader reader = new StringReader("{\"id1\":{\"field1\":\"value1\"},\"id2\":null,\"id3\":{\"field1\":\"value3\"}}") {
+            @Override
+            public void close()
+            {
+                closed.set(true);
+                super.close();
+            }
+        };
+        try (Stream<Map.Entry<String, Domain>> stream = JsonUtils.readObjectEntriesFromReader(reader, Domain.class))
+        {
+            List<Map.Entry<String, Domain>> entries = stream.collect(Collectors.toList());
+            assertEquals(Arrays.asList("id1", "id2", "id3"), entries.stream()
+                                                                    .map(Map.Entry::getKey)
+                                                                    .collect(Collectors.toList()));
+            assertEquals(new Domain("value1"), entries.get(0)
+                                                      .getValue());
+            assertNull(entries.get(1)
+                              .getValue());
+            assertEquals(new Domain("value3"), entries.get(2)
+                                                      .getValue());
+        }
+        assertTrue(closed.get());
+
+        assertEquals(0, JsonUtils.readObjectEntriesFromReader(new StringReader("{}"), Domain.class)
+                                 .count());
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readObjectEntriesFromReader(new StringReader("[]"), Domain.class));
+    }
+
+    @Test
+    public void testReadArrayAtPointerStreamsNestedArrayAndReportsSiblings() throws Exception
+    {
+        String json = "{\"meta\":{\"page\":1},\"data\":{\"skipped\":[1,{\"a\":2}],\"items\":[{\"field1\":\"value1\"},{\"field1\":\"value2\"}],"
+                + "\"total\":2},\"tail\":true}";
+
+        assertEquals(Arrays.asList(new Domain("value1"), new Domain("value2")), JsonUtils.readArrayAtPointer(new StringReader(json), "/data/items",
+                                                                                                              Domain.class)
+                                                                                          .collect(Collectors.toList()));
+
+        Map<String, String> siblings = new LinkedHashMap<>();
+        try (Stream<Domain> stream = JsonUtils.readArrayAtPointer(new StringReader(json), "/data/items", Domain.class,
+                                                                  (pointer, node) -> siblings.put(pointer.toString(), node.toString())))
+        {
+            assertEquals(Arrays.asList("/meta", "/data/skipped"), new ArrayList<>(siblings.keySet()));
+            assertEquals(2, stream.count());
+        }
+        assertEquals(Arrays.asList("/meta", "/data/skipped", "/data/total", "/tail"), new ArrayList<>(siblings.keySet()));
+        assertEquals("{\"page\":1}", siblings.get("/meta"));
+        assertEquals("[1,{\"a\":2}]", siblings.get("/data/skipped"));
+
+        assertEquals(Arrays.asList(new Domain("value2")), JsonUtils.readArrayAtPointer(new StringReader("[[{\"field1\":\"value1\"}],[{\"field1\":\"value2\"}]]"),
+                                                                                       "/1", Domain.class)
+                                                                   .collect(Collectors.toList()));
+        assertEquals(0, JsonUtils.readArrayAtPointer(new StringReader(json), "/data/missing", Domain.class)
+                                 .count());
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readArrayAtPointer(new StringReader(json), "/meta", Domain.class));
+    }
+
+    @Test
+    public void testExtractValuesAtPointersWithoutReadingTheWholeDocument() throws Exception
+    {
+        String json = "{\"meta\":{\"a\":[1,2]},\"config\":{\"limits\":{\"field1\":\"value1\"},\"list\":[\"x\",\"y\"],\"none\":null}}";
+
+        assertEquals(new Domain("value1"), JsonUtils.extract(json, JsonPointer.compile("/config/limits"), Domain.class)
+                                                    .get());
+        assertEquals("y", JsonUtils.extract(json.getBytes(StandardCharsets.UTF_8), JsonPointer.compile("/config/list/1"), String.class)
+                                   .get());
+        assertFalse(JsonUtils.extract(new StringReader(json), JsonPointer.compile("/config/missing"), Domain.class)
+                             .isPresent());
+        assertFalse(JsonUtils.extract(json, JsonPointer.compile("/config/none"), Domain.class)
+                             .isPresent());
+
+        Map<JsonPointer, JsonNode> values = JsonUtils.extract(json, Arrays.asList(JsonPointer.compile("/config/list"), JsonPointer.compile("/meta/a/0"),
+                                                                                  JsonPointer.compile("/config/list/0"), JsonPointer.compile("/missing")),
+                                                              JsonNode.class);
+        assertEquals(3, values.size());
+        assertEquals(1, values.get(JsonPointer.compile("/meta/a/0"))
+                              .asInt());
+        assertEquals("[\"x\",\"y\"]", values.get(JsonPointer.compile("/config/list"))
+                                             .toString());
+        assertEquals("x", values.get(JsonPointer.compile("/config/list/0"))
+                                .asText());
+    }
+
+    /**
+     * Of duplicate field names the first one wins, no matter whether the extraction stops before reaching the later
+     * ones or not, and for pointers nested within a bound value as well.
+     */
+    @Test
+    public void testExtractTakesFirstOfDuplicateFieldNames() throws Exception
+    {
+        String json = "{\"a\":{\"b\":1,\"b\":2,\"c\":3},\"a\":{\"b\":4,\"d\":5},\"e\":6}";
+
+        assertEquals(Integer.valueOf(1), JsonUtils.extract(json, JsonPointer.compile("/a/b"), Integer.class)
+                                                  .get());
+
+        Map<JsonPointer, Integer> values = JsonUtils.extract(json, Arrays.asList(JsonPointer.compile("/a/b"), JsonPointer.compile("/a/d"),
+                                                                                 JsonPointer.compile("/e")),
+                                                             Integer.class);
+        assertEquals(Integer.valueOf(1), values.get(JsonPointer.compile("/a/b")));
+        assertFalse(values.containsKey(JsonPointer.compile("/a/d")));
+        assertEquals(Integer.valueOf(6), values.get(JsonPointer.compile("/e")));
+
+        Map<JsonPointer, JsonNode> nodes = JsonUtils.extract(json, Arrays.asList(JsonPointer.compile("/a"), JsonPointer.compile("/a/b")),
+                                                             JsonNode.class);
+        assertEquals(3, nodes.get(JsonPointer.compile("/a"))
+                             .get("c")
+                             .asInt());
+        assertEquals(1, nodes.get(JsonPointer.compile("/a/b"))
+                             .asInt());
+    }
+
+    @Test
+    public void testExtractStopsReadingOnceAllPointersAreFound() throws Exception
+    {
+        // the content behind the value is invalid, which is never reached
+        String json = "{\"a\":{\"b\":1},\"c\": this is not json";
+        assertEquals(Integer.valueOf(1), JsonUtils.extract(json, JsonPointer.compile("/a/b"), Integer.class)
+                                                  .get());
+        assertThrows(IllegalStateException.class, () -> JsonUtils.extract(json, JsonPointer.compile("/c"), Integer.class));
+    }
+
+    @Test
+    public void testReadArrayFromFileAtAnyElementIndexUsingOffsetIndex() throws Exception
+    {
+        Path arrayFile = Files.createTempFile("array", ".json");
+        Path indexFile = Files.createTempFile("array", ".index");
+        try
+        {
+            String json = " [ {\"field1\":\"v0\"},{\"field1\":\"v\u00e41\"} ,\n{\"field1\":\"v2\"}, {\"field1\":\"v3\"},{\"field1\":\"v4\"},"
+                    + "{\"field1\":\"v5\"},{\"field1\":\"v6\"} ]";
+            Files.write(arrayFile, json.getBytes(StandardCharsets.UTF_8));
+
+            JsonUtils.buildArrayOffsetIndex(arrayFile, indexFile, 3);
+            JsonArrayOffsetIndex index = JsonUtils.readArrayOffsetIndex(arrayFile, indexFile);
+            assertEquals(7, index.getElementCount());
+            assertEquals(6, index.getIndexedElementIndex(100));
+
+            for (int fromIndex = 0; fromIndex <= 8; fromIndex++)
+            {
+                try (Stream<Domain> stream = JsonUtils.readArrayFromFile(arrayFile, index, fromIndex, Domain.class))
+                {
+                    assertEquals(JsonUtils.readArrayFromReader(new StringReader(json), Domain.class)
+                                          .skip(fromIndex)
+                                          .collect(Collectors.toList()),
+                                 stream.collect(Collectors.toList()));
+                }
+            }
+
+            // an index of a rewritten array file is rejected
+            Files.write(arrayFile, "[1,\"a\",[2,{}],null,true,3.5]".getBytes(StandardCharsets.UTF_8));
+            JsonArrayOffsetIndex outdatedIndex = index;
+            assertThrows(IllegalStateException.class, () -> JsonUtils.readArrayOffsetIndex(arrayFile, indexFile));
+            assertThrows(IllegalStateException.class, () -> JsonUtils.readArrayFromFile(arrayFile, outdatedIndex, 3, Object.class));
+
+            index = JsonUtils.buildArrayOffsetIndex(arrayFile, indexFile, 2);
+            try (Stream<Object> stream = JsonUtils.readArrayFromFile(arrayFile, index, 3, Object.class))
+            {
+                assertEquals(Arrays.asList(null, true, 3.5), stream.collect(Collectors.toList()));
+            }
+        }
+        finally
+        {
+            Files.delete(arrayFile);
+            Files.delete(indexFile);
+        }
+    }
+
+    @Test
+    public void testReadArrayFromFileResumesAtCheckpoint() throws Exception
+    {
+        Path arrayFile = Files.createTempFile("array", ".json");
+        try
+        {
+            String json = "[ {\"field1\":\"v\u00e40\"} ,\n12 , \"a,]\",[1,[2]], null,-3.5e2,true ,{\"a\":{}},7]";
+            Files.write(arrayFile, json.getBytes(StandardCharsets.UTF_8));
+
+            List<Object> expected = JsonUtils.readArrayFromReader(new StringReader(json), Object.class)
+                                             .collect(Collectors.toList());
+            List<JsonArrayElement<Object>> elements;
+            try (Stream<JsonArrayElement<Object>> stream = JsonUtils.readArrayFromFile(arrayFile, JsonArrayCheckpoint.start(), Object.class))
+            {
+                elements = stream.collect(Collectors.toList());
+            }
+            assertEquals(expected, elements.stream()
+                                           .map(JsonArrayElement::getValue)
+                                           .collect(Collectors.toList()));
+
+            for (int ii = 0; ii < elements.size(); ii++)
+            {
+                JsonArrayCheckpoint checkpoint = JsonUtils.readFromString(JsonUtils.serialize(elements.get(ii)
+                                                                                                      .getCheckpoint()),
+                                                                          JsonArrayCheckpoint.class);
+                assertEquals(elements.get(ii)
+                                     .getCheckpoint(),
+                             checkpoint);
+                assertEquals(ii + 1, checkpoint.getIndex());
+                assertEquals(ii, elements.get(ii)
+                                         .getIndex());
+
+                try (Stream<JsonArrayElement<Object>> stream = JsonUtils.readArrayFromFile(arrayFile, checkpoint, Object.class))
+                {
+                    assertEquals(elements.subList(ii + 1, elements.size())
+                                         .toString(),
+                                 stream.collect(Collectors.toList())
+                                       .toString());
+                }
+            }
+        }
+        finally
+        {
+            Files.delete(arrayFile);
+        }
+    }
+
+    @Test
+    public void testSortArray() throws Exception
+    {
+        Path inputFile = Files.createTempFile("array", ".json");
+        Path outputFile = Files.createTempFile("array", ".sorted.json");
+        try
+        {
+            Random random = new Random(42);
+            List<Map<String, Object>> elements = new ArrayList<>();
+            for (int ii = 0; ii < 1000; ii++)
+            {
+                Map<String, Object> element = new LinkedHashMap<>();
+                element.put("key", random.nextInt(50));
+                element.put("seq", ii);
+                element.put("text", "\u00e4" + random.nextInt());
+                elements.add(element);
+            }
+            try (Writer writer = Files.newBufferedWriter(inputFile, StandardCharsets.UTF_8))
+            {
+                JsonUtils.serializeArray(elements.stream(), writer, true);
+            }
+
+            List<Map<String, Object>> expected = new ArrayList<>(elements);
+            expected.sort(Comparator.comparing(element -> (Integer) element.get("key")));
+
+            for (long memoryBudget : new long[] { 1, 1000, 10000, Long.MAX_VALUE })
+            {
+                JsonUtils.sortArray(inputFile, outputFile, JsonNode.class, node -> node.get("key")
+                                                                                    .asInt(),
+                                    memoryBudget);
+                try (Stream<Object> stream = JsonUtils.readArrayFromFile(outputFile, Object.class))
+                {
+                    assertEquals(expected, stream.collect(Collectors.toList()));
+                }
+            }
+
+            Files.write(inputFile, " [ ] ".getBytes(StandardCharsets.UTF_8));
+            JsonUtils.sortArray(inputFile, outputFile, String.class, Comparator.naturalOrder(), 10);
+            assertEquals("[]", new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            Files.delete(inputFile);
+            Files.delete(outputFile);
+        }
+    }
+
+    @Test
+    public void testMergeSortedArrays() throws Exception
+    {
+        List<StringReader> readers = Arrays.asList(new StringReader("[1,4,4,9]"), new StringReader("[]"), new StringReader("[2,3,4,10,11]"),
+                                                   new StringReader("[0]"));
+        try (Stream<Integer> stream = JsonUtils.mergeSortedArrays(readers, Comparator.naturalOrder(), Integer.class))
+        {
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4, 4, 4, 9, 10, 11), stream.collect(Collectors.toList()));
+        }
+
+        StringWriter writer = new StringWriter();
+        JsonUtils.mergeSortedArrays(Arrays.asList(new StringReader("[{\"field1\":\"a\"},{\"field1\":\"c\"}]"),
+                                                  new StringReader("[{\"field1\":\"b\"}]")),
+                                    Comparator.comparing(Domain::getField1), Domain.class, writer);
+        assertEquals("[{\"field1\":\"a\"},{\"field1\":\"b\"},{\"field1\":\"c\"}]", writer.toString());
+
+        Path arrayFile1 = Files.createTempFile("array", ".json");
+        Path arrayFile2 = Files.createTempFile("array", ".json");
+        try
+        {
+            Files.write(arrayFile1, "[\"a\",\"c\",\"e\"]".getBytes(StandardCharsets.UTF_8));
+            Files.write(arrayFile2, "[\"b\",\"d\"]".getBytes(StandardCharsets.UTF_8));
+            try (Stream<String> stream = JsonUtils.mergeSortedArrayFiles(Arrays.asList(arrayFile1, arrayFile2), Comparator.naturalOrder(),
+                                                                         String.class))
+            {
+                assertEquals(Arrays.asList("a", "b", "c", "d", "e"), stream.collect(Collectors.toList()));
+            }
+        }
+        finally
+        {
+            Files.delete(arrayFile1);
+            Files.delete(arrayFile2);
+        }
+    }
+
+    @Test
+    public void testJoinArrays() throws Exception
+    {
+        Path orderFile = Files.createTempFile("orders", ".json");
+        Path customerFile = Files.createTempFile("customers", ".json");
+        try
+        {
+            List<Map<String, Object>> orders = new ArrayList<>();
+            for (int ii = 0; ii < 200; ii++)
+            {
+                Map<String, Object> order = new LinkedHashMap<>();
+                order.put("id", ii);
+                order.put("customerId", ii % 17 == 0 ? null : ii % 60);
+                orders.add(order);
+            }
+            List<Map<String, Object>> customers = new ArrayList<>();
+            for (int ii = 0; ii < 50; ii++)
+            {
+                Map<String, Object> customer = new LinkedHashMap<>();
+                customer.put("id", ii);
+                customer.put("name", "c\u00e4" + ii);
+                customers.add(customer);
+            }
+            customers.add(new LinkedHashMap<>(customers.get(7)));
+            customers.get(50)
+                     .put("name", "other7");
+            try (Writer writer = Files.newBufferedWriter(orderFile, StandardCharsets.UTF_8))
+            {
+                JsonUtils.serializeArray(orders.stream(), writer, true);
+            }
+            try (Writer writer = Files.newBufferedWriter(customerFile, StandardCharsets.UTF_8))
+            {
+                JsonUtils.serializeArray(customers.stream(), writer);
+            }
+
+            List<String> expectedInner = new ArrayList<>();
+            List<String> expectedLeft = new ArrayList<>();
+            for (Map<String, Object> order : orders)
+            {
+                List<String> joined = customers.stream()
+                                               .filter(customer -> customer.get("id")
+                                                                           .equals(order.get("customerId")))
+                                               .map(customer -> order.get("id") + ":" + customer.get("name"))
+                                               .collect(Collectors.toList());
+                expectedInner.addAll(joined);
+                expectedLeft.addAll(joined.isEmpty() ? Arrays.asList(order.get("id") + ":null") : joined);
+            }
+
+            Function<JsonNode, Integer> keyExtractor = node -> node.get("id")
+                                                                   .isNull() ? null
+                                                                           : node.get("id")
+                                                                                 .asInt();
+            Function<JsonNode, Integer> customerIdExtractor = node -> node.get("customerId")
+                                                                          .isNull() ? null
+                                                                                  : node.get("customerId")
+                                                                                        .asInt();
+            BiFunction<JsonNode, JsonNode, String> joiner = (order, customer) -> order.get("id")
+                                                                                      .asText()
+                    + ":" + (customer != null ? customer.get("name")
+                                                        .asText()
+                            : null);
+
+            try (Stream<String> stream = JsonUtils.joinArrays(orderFile, JsonNode.class, customerIdExtractor, customerFile, JsonNode.class,
+                                                              keyExtractor)
+                                                  .join(joiner))
+            {
+                assertEquals(expectedInner, stream.collect(Collectors.toList()));
+            }
+            try (Stream<String> stream = JsonUtils.joinArrays(orderFile, JsonNode.class, customerIdExtractor, customerFile, JsonNode.class,
+                                                              keyExtractor)
+                                                  .withJoinType(JsonHashJoin.JoinType.LEFT)
+                                                  .join(joiner))
+            {
+                assertEquals(expectedLeft, stream.collect(Collectors.toList()));
+            }
+
+            for (JsonHashJoin.JoinType joinType : JsonHashJoin.JoinType.values())
+            {
+                try (Stream<String> stream = JsonUtils.joinArrays(orderFile, JsonNode.class, customerIdExtractor, customerFile, JsonNode.class,
+                                                                  keyExtractor)
+                                                      .withJoinType(joinType)
+                                                      .withMemoryBudget(100)
+                                                      .join(joiner))
+                {
+                    List<String> expected = new ArrayList<>(joinType == JsonHashJoin.JoinType.LEFT ? expectedLeft : expectedInner);
+                    List<String> result = stream.collect(Collectors.toList());
+                    Collections.sort(expected);
+                    Collections.sort(result);
+                    assertEquals(expected, result);
+                }
+            }
+        }
+        finally
+        {
+            Files.delete(orderFile);
+            Files.delete(customerFile);
+        }
+    }
+
+    @Test
+    public void testAggregateArray()
+    {
+        String json = "[{\"category\":\"a\",\"price\":1.5,\"quantity\":2,\"details\":{\"price\":100}},"
+                + "{\"details\":[1,{}],\"category\":\"b\",\"price\":3}," + "{\"category\":\"a\",\"price\":\"n/a\",\"quantity\":4},"
+                + "{\"price\":7},{\"category\":null,\"price\":8},{\"category\":1,\"price\":-2.5}]";
+        JsonAggregation aggregation = JsonAggregation.groupBy("category", "price", "quantity");
+        JsonAggregation.Result result = JsonUtils.aggregateArray(new StringReader(json), aggregation);
+
+        assertEquals(Arrays.asList("a", "b", "1"), new ArrayList<>(result.getGroups()
+                                                                         .keySet()));
+        JsonAggregation.Group group = result.getGroup("a");
+        assertEquals(2, group.getCount());
+        assertEquals(1, group.getCount("price"));
+        assertEquals(1.5, group.getSum("price"), 0.0);
+        assertEquals(3.0, group.getAverage("quantity"), 0.0);
+        assertEquals(2.0, group.getMin("quantity"), 0.0);
+        assertEquals(4.0, group.getMax("quantity"), 0.0);
+        assertTrue(Double.isNaN(result.getGroup("b")
+                                      .getMin("quantity")));
+        assertEquals("{\"a\":{\"count\":2,\"price\":{\"count\":1,\"sum\":1.5,\"min\":1.5,\"max\":1.5,\"average\":1.5},"
+                + "\"quantity\":{\"count\":2,\"sum\":6.0,\"min\":2.0,\"max\":4.0,\"average\":3.0}},"
+                + "\"b\":{\"count\":1,\"price\":{\"count\":1,\"sum\":3.0,\"min\":3.0,\"max\":3.0,\"average\":3.0},"
+                + "\"quantity\":{\"count\":0,\"sum\":0.0,\"min\":null,\"max\":null,\"average\":null}},"
+                + "\"1\":{\"count\":1,\"price\":{\"count\":1,\"sum\":-2.5,\"min\":-2.5,\"max\":-2.5,\"average\":-2.5},"
+                + "\"quantity\":{\"count\":0,\"sum\":0.0,\"min\":null,\"max\":null,\"average\":null}}}", JsonUtils.serialize(result));
+
+        List<StringReader> chunks = new ArrayList<>();
+        for (int chunk = 0; chunk < 8; chunk++)
+        {
+            StringBuilder chunkJson = new StringBuilder("[");
+            for (int ii = 0; ii < 1000; ii++)
+            {
+                chunkJson.append(ii > 0 ? "," : "")
+                         .append("{\"category\":\"c")
+                         .append(ii % 3)
+                         .append("\",\"price\":")
+                         .append(chunk * 1000 + ii)
+                         .append("}");
+            }
+            chunks.add(new StringReader(chunkJson.append("]")
+                                                 .toString()));
+        }
+        JsonAggregation.Result chunkedResult = JsonUtils.aggregateArrays(chunks, JsonAggregation.groupBy("category", "price"));
+        assertEquals(3, chunkedResult.getGroups()
+                                     .size());
+        assertEquals(8000, chunkedResult.getGroups()
+                                        .values()
+                                        .stream()
+                                        .mapToLong(JsonAggregation.Group::getCount)
+                                        .sum());
+        assertEquals(7999 * 8000 / 2, chunkedResult.getGroups()
+                                                   .values()
+                                                   .stream()
+                                                   .mapToDouble(chunkedGroup -> chunkedGroup.getSum("price"))
+                                                   .sum(),
+                     0.0);
+        assertEquals(0.0, chunkedResult.getGroup("c0")
+                                       .getMin("price"),
+                     0.0);
+        assertEquals(7999.0, chunkedResult.getGroup("c0")
+                                          .getMax("price"),
+                     0.0);
+        assertEquals(0, JsonUtils.aggregateArrays(Collections.emptyList(), aggregation)
+                                 .getGroups()
+                                 .size());
+
+        AtomicBoolean closed = new AtomicBoolean();
+        List<StringReader> failingChunks = Arrays.asList(new StringReader("[{\"category\":"), new StringReader("[]")
+        {
+            @Override
+            public void close()
+            {
+                closed.set(true);
+                super.close();
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> JsonUtils.aggregateArrays(failingChunks, aggregation));
+        assertTrue(closed.get());
+
+        assertThrows(IllegalArgumentException.class, () -> aggregation.emptyResult()
+                                                                      .merge(JsonAggregation.groupBy("category", "price")
+                                                                                            .emptyResult()));
+    }
+
+    @Test
+    public void testSplitArray() throws Exception
+    {
+        Path arrayFile = Files.createTempFile("array", ".json");
+        List<Path> shardFiles = Arrays.asList(Files.createTempFile("shard", ".json"), Files.createTempFile("shard", ".json"),
+                                              Files.createTempFile("shard", ".json"));
+        try
+        {
+            List<Object> elements = new ArrayList<>();
+            for (int ii = 0; ii < 100; ii++)
+            {
+                Map<String, Object> element = new LinkedHashMap<>();
+                element.put("key", "k\u00e4" + (ii % 7));
+                element.put("values", Arrays.asList(ii, "a,]" + ii));
+                elements.add(ii % 10 == 5 ? ii : element);
+            }
+            try (Writer writer = Files.newBufferedWriter(arrayFile, StandardCharsets.UTF_8))
+            {
+                JsonUtils.serializeArray(elements.stream(), writer, true);
+            }
+
+            long[] counts = JsonUtils.splitArray(arrayFile, shardFiles, JsonArraySplitter.roundRobin());
+            assertEquals(Arrays.toString(new long[] { 34, 33, 33 }), Arrays.toString(counts));
+            for (int shard = 0; shard < 3; shard++)
+            {
+                List<Object> expected = new ArrayList<>();
+                for (int ii = shard; ii < elements.size(); ii += 3)
+                {
+                    expected.add(elements.get(ii));
+                }
+                assertEquals(expected, readShard(shardFiles.get(shard)));
+            }
+
+            counts = JsonUtils.splitArray(arrayFile, shardFiles, JsonArraySplitter.bySize());
+            List<Object> concatenated = new ArrayList<>();
+            for (int shard = 0; shard < 3; shard++)
+            {
+                List<Object> shardElements = readShard(shardFiles.get(shard));
+                assertEquals(counts[shard], shardElements.size());
+                assertTrue(counts[shard] > 20);
+                concatenated.addAll(shardElements);
+            }
+            assertEquals(elements, concatenated);
+
+            counts = JsonUtils.splitArray(arrayFile, shardFiles, JsonArraySplitter.byKeyHash("key"));
+            assertEquals(100, Arrays.stream(counts)
+                                    .sum());
+            Map<Object, Integer> shardByKey = new HashMap<>();
+            for (int shard = 0; shard < 3; shard++)
+            {
+                for (Object element : readShard(shardFiles.get(shard)))
+                {
+                    Object key = element instanceof Map ? ((Map<?, ?>) element).get("key") : null;
+                    Integer previousShard = shardByKey.putIfAbsent(key, shard);
+                    assertEquals(shard, previousShard != null ? previousShard.intValue() : shard);
+                }
+            }
+
+            Files.write(arrayFile, "[]".getBytes(StandardCharsets.UTF_8));
+            counts = JsonUtils.splitArray(arrayFile, shardFiles, JsonArraySplitter.roundRobin());
+            assertEquals(Arrays.toString(new long[3]), Arrays.toString(counts));
+            assertEquals("[]", new String(Files.readAllBytes(shardFiles.get(2)), StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            Files.delete(arrayFile);
+            for (Path shardFile : shardFiles)
+            {
+                Files.delete(shardFile);
+            }
+        }
+    }
+
+    private static List<Object> readShard(Path shardFile)
+    {
+        try (Stream<Object> stream = JsonUtils.readArrayFromFile(shardFile, Object.class))
+        {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testConcatArrays() throws Exception
+    {
+        List<String> arrays = Arrays.asList(" [ {\"a\": [1, \"]\"]} ,\n 2 ] ", "[]", "[\"\u00e4\\\"\",null,-1.5e3]", "[ ]", "[{}]");
+        String expected = "[{\"a\": [1, \"]\"]} ,\n 2,\"\u00e4\\\"\",null,-1.5e3,{}]";
+
+        StringWriter writer = new StringWriter();
+        JsonUtils.concatArrays(arrays.stream()
+                                     .map(StringReader::new)
+                                     .collect(Collectors.toList()),
+                               writer);
+        assertEquals(expected.replace(" ,\n ", ","), writer.toString());
+
+        List<Path> arrayFiles = new ArrayList<>();
+        try
+        {
+            for (String array : arrays)
+            {
+                Path arrayFile = Files.createTempFile("array", ".json");
+                arrayFiles.add(arrayFile);
+                Files.write(arrayFile, array.getBytes(StandardCharsets.UTF_8));
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            JsonUtils.concatArrays(arrayFiles, outputStream);
+            assertEquals(expected, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+            Files.write(arrayFiles.get(1), "[1,}".getBytes(StandardCharsets.UTF_8));
+            assertThrows(JsonUtils.JSONFormatException.class, () -> JsonUtils.concatArrays(arrayFiles, new ByteArrayOutputStream()));
+            Files.write(arrayFiles.get(1), "[1] [2]".getBytes(StandardCharsets.UTF_8));
+            assertThrows(JsonUtils.JSONFormatException.class, () -> JsonUtils.concatArrays(arrayFiles, new ByteArrayOutputStream()));
+        }
+        finally
+        {
+            for (Path arrayFile : arrayFiles)
+            {
+                Files.delete(arrayFile);
+            }
+        }
+
+        assertThrows(JsonUtils.JSONFormatException.class, () -> JsonUtils.concatArrays(Arrays.asList(new StringReader("[1,2")), new StringWriter()));
+        assertThrows(JsonUtils.JSONFormatException.class, () -> JsonUtils.concatArrays(Arrays.asList(new StringReader("{}")), new StringWriter()));
+    }
+
+    @Test
+    public void testPartitionedWriter() throws Exception
+    {
+        Path directory = Files.createTempDirectory("partitions");
+        try
+        {
+            List<Domain> records = IntStream.range(0, 200)
+                                            .mapToObj(ii -> new Domain("p" + (ii * 7 % 10) + ":" + ii))
+                                            .collect(Collectors.toList());
+            Function<Domain, String> keyFunction = record -> record.getField1()
+                                                                   .substring(0, 2);
+
+            for (JsonOutputFormat format : JsonOutputFormat.values())
+            {
+                JsonPartitionedWriter<Domain, String> partitionedWriter;
+                try (JsonPartitionedWriter<Domain, String> writer = JsonUtils.newPartitionedWriter(keyFunction,
+                                                                                                   key -> directory.resolve(key + "." + format),
+                                                                                                   format)
+                                                                             .withMaxOpenFiles(3))
+                {
+                    writer.writeAll(records.stream());
+                    assertEquals(10, writer.getPartitionFiles()
+                                           .size());
+                    partitionedWriter = writer;
+                }
+                assertEquals(directory.resolve("p3." + format), partitionedWriter.getPartitionFiles()
+                                                                                 .get("p3"));
+                assertEquals(10, partitionedWriter.getPartitionFiles()
+                                                  .size());
+                partitionedWriter.close();
+                assertThrows(IllegalStateException.class, () -> partitionedWriter.write(records.get(0)));
+
+                for (int partition = 0; partition < 10; partition++)
+                {
+                    String key = "p" + partition;
+                    List<Domain> expected = records.stream()
+                                                   .filter(record -> keyFunction.apply(record)
+                                                                                .equals(key))
+                                                   .collect(Collectors.toList());
+                    Path file = directory.resolve(key + "." + format);
+                    if (format == JsonOutputFormat.ARRAY)
+                    {
+                        try (Stream<Domain> stream = JsonUtils.readArrayFromFile(file, Domain.class))
+                        {
+                            assertEquals(expected, stream.collect(Collectors.toList()));
+                        }
+                    }
+                    else
+                    {
+                        assertEquals(expected, Files.readAllLines(file, StandardCharsets.UTF_8)
+                                                    .stream()
+                                                    .map(line -> JsonUtils.readFromString(line, Domain.class))
+                                                    .collect(Collectors.toList()));
+                    }
+                }
+            }
+
+            Path failingFile = directory.resolve("failing-p0");
+            JsonPartitionedWriter<Domain, String> failingWriter = JsonUtils.newPartitionedWriter(keyFunction,
+                                                                                                 key -> directory.resolve("failing-" + key),
+                                                                                                 JsonOutputFormat.ARRAY)
+                                                                           .withMaxOpenFiles(1);
+            failingWriter.write(records.get(0));
+            failingWriter.write(records.get(1));
+            Files.delete(failingFile);
+            Files.createDirectory(failingFile);
+            assertThrows(IOException.class, () -> failingWriter.close());
+            assertEquals("[" + JsonUtils.serialize(records.get(1)) + "]",
+                         new String(Files.readAllBytes(directory.resolve("failing-p7")), StandardCharsets.UTF_8));
+
+            Files.delete(failingFile);
+            failingWriter.close();
+            assertEquals("]", new String(Files.readAllBytes(failingFile), StandardCharsets.UTF_8));
+            assertEquals("[" + JsonUtils.serialize(records.get(1)) + "]",
+                         new String(Files.readAllBytes(directory.resolve("failing-p7")), StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            try (Stream<Path> files = Files.list(directory))
+            {
+                for (Path file : files.collect(Collectors.toList()))
+                {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testRollingWriter() throws Exception
+    {
+        Path directory = Files.createTempDirectory("segments");
+        try
+        {
+            List<Domain> records = IntStream.range(0, 100)
+                                            .mapToObj(ii -> new Domain("value" + ii))
+                                            .collect(Collectors.toList());
+
+            JsonRollingWriter<Domain> rollingWriter;
+            try (JsonRollingWriter<Domain> writer = JsonUtils.<Domain>newRollingWriter(index -> directory.resolve("records" + index + ".json"),
+                                                                                       JsonOutputFormat.ARRAY)
+                                                             .withMaxRecords(30))
+            {
+                for (Domain record : records)
+                {
+                    writer.write(record);
+                }
+                assertEquals(3, writer.getSegmentFiles()
+                                      .size());
+                rollingWriter = writer;
+            }
+            assertEquals(4, rollingWriter.getSegmentFiles()
+                                         .size());
+            List<Domain> readRecords = new ArrayList<>();
+            for (int index = 0; index < 4; index++)
+            {
+                try (Stream<Domain> stream = JsonUtils.readArrayFromFile(directory.resolve("records" + index + ".json"), Domain.class))
+                {
+                    List<Domain> segment = stream.collect(Collectors.toList());
+                    assertEquals(index < 3 ? 30 : 10, segment.size());
+                    readRecords.addAll(segment);
+                }
+            }
+            assertEquals(records, readRecords);
+
+            try (JsonRollingWriter<Domain> writer = JsonUtils.<Domain>newRollingWriter(index -> directory.resolve("records" + index + ".ndjson"),
+                                                                                       JsonOutputFormat.NDJSON)
+                                                             .withMaxBytes(200)
+                                                             .withCompression(true))
+            {
+                for (Domain record : records)
+                {
+                    writer.write(record);
+                }
+                rollingWriter = writer;
+            }
+            List<Path> segmentFiles = rollingWriter.getSegmentFiles();
+            readRecords.clear();
+            for (Path segmentFile : segmentFiles)
+            {
+                assertTrue(segmentFile.toString()
+                                      .endsWith(".ndjson.gz"));
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(segmentFile)),
+                                                                                      StandardCharsets.UTF_8)))
+                {
+                    List<String> lines = reader.lines()
+                                               .collect(Collectors.toList());
+                    assertTrue(lines.stream()
+                                    .mapToInt(line -> line.length() + 1)
+                                    .sum() < 200 + 30);
+                    lines.forEach(line -> readRecords.add(JsonUtils.readFromString(line, Domain.class)));
+                }
+            }
+            assertEquals(10, segmentFiles.size());
+            assertEquals(records, readRecords);
+            rollingWriter.close();
+            assertEquals(segmentFiles, rollingWriter.getSegmentFiles());
+            JsonRollingWriter<Domain> closedWriter = rollingWriter;
+            assertThrows(IllegalStateException.class, () -> closedWriter.write(records.get(0)));
+
+            try (JsonRollingWriter<Domain> writer = JsonUtils.<Domain>newRollingWriter(index -> directory.resolve("timed" + index + ".json"),
+                                                                                       JsonOutputFormat.ARRAY)
+                                                             .withMaxDuration(Duration.ZERO))
+            {
+                for (Domain record : records.subList(0, 5))
+                {
+                    writer.write(record);
+                }
+                rollingWriter = writer;
+            }
+            assertEquals(5, rollingWriter.getSegmentFiles()
+                                         .size());
+            assertEquals("[{\"field1\":\"value4\"}]", new String(Files.readAllBytes(directory.resolve("timed4.json")), StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            try (Stream<Path> files = Files.list(directory))
+            {
+                for (Path file : files.collect(Collectors.toList()))
+                {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testCompressedSerializeAndRead() throws Exception
+    {
+        List<Domain> records = IntStream.range(0, 5000)
+                                        .mapToObj(ii -> new Domain("value" + (ii * 7919 % 1000)))
+                                        .collect(Collectors.toList());
+        StringWriter plainWriter = new StringWriter();
+        JsonUtils.serializeArray(records.stream(), plainWriter);
+        byte[] plain = plainWriter.toString()
+                                  .getBytes(StandardCharsets.UTF_8);
+
+        for (JsonCompression compression : JsonCompression.values())
+        {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            JsonUtils.serializeArray(records.stream(), outputStream, compression);
+            byte[] written = outputStream.toByteArray();
+            if (compression == JsonCompression.NONE)
+            {
+                assertTrue(Arrays.equals(plain, written));
+            }
+            else
+            {
+                assertTrue(written.length < plain.length / 4);
+                assertTrue(Arrays.equals(plain, gunzip(written)));
+            }
+
+            try (Stream<Domain> stream = JsonUtils.readArrayFromInputStream(new ByteArrayInputStream(written), Domain.class))
+            {
+                assertEquals(records, stream.collect(Collectors.toList()));
+            }
+
+            outputStream.reset();
+            JsonUtils.serialize(new Domain("v\u00e4lue"), outputStream, compression);
+            assertEquals(new Domain("v\u00e4lue"), JsonUtils.readFromInputStream(new ByteArrayInputStream(outputStream.toByteArray()), Domain.class));
+        }
+
+        // many small blocks, of which the completed ones are written by a flush, and an empty stream
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzipOutputStream = new ParallelGzipOutputStream(outputStream, 6, 1000, ForkJoinPool.commonPool()))
+        {
+            gzipOutputStream.write(plain, 0, 12345);
+            gzipOutputStream.flush();
+            assertTrue(Arrays.equals(Arrays.copyOf(plain, 12000), gunzipAvailable(outputStream.toByteArray())));
+            gzipOutputStream.write(plain, 12345, plain.length - 12345);
+        }
+        assertTrue(Arrays.equals(plain, gunzip(outputStream.toByteArray())));
+
+        outputStream.reset();
+        new ParallelGzipOutputStream(outputStream).close();
+        assertEquals(0, gunzip(outputStream.toByteArray()).length);
+        assertNull(JsonUtils.readFromInputStream(null, Domain.class));
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException
+    {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data)))
+        {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Decompresses a gzip stream without trailer up to its end
+     *
+     * @param data
+     * @return
+     * @throws IOException
+     */
+    private static byte[] gunzipAvailable(byte[] data) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data)))
+        {
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0)
+            {
+                outputStream.write(buffer, 0, count);
+            }
+        }
+        catch (EOFException e)
+        {
+            // the trailer is missing before the stream is finished
+        }
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void testArrayHashIndexLookup() throws Exception
+    {
+        Path arrayFile = Files.createTempFile("array", ".json");
+        Path indexFile = Files.createTempFile("array", ".hindex");
+        try
+        {
+            StringBuilder json = new StringBuilder("[");
+            for (int ii = 0; ii < 100; ii++)
+            {
+                json.append(ii > 0 ? ",\n" : "")
+                    .append("{\"nested\":{\"field1\":\"x\"},\"field1\":\"k\u00e4")
+                    .append(ii)
+                    .append("\",\"id\":")
+                    .append(ii)
+                    .append("}");
+            }
+            json.append(",{\"id\":null},[1],{\"field1\":\"k\u00e43\",\"id\":-1}]");
+            Files.write(arrayFile, json.toString()
+                                       .getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(101, JsonUtils.buildArrayHashIndex(arrayFile, indexFile, "field1"));
+            try (JsonArrayHashIndex index = JsonUtils.openArrayHashIndex(arrayFile, indexFile))
+            {
+                assertEquals("field1", index.getKeyField());
+                assertEquals(101, index.size());
+                for (int ii = 0; ii < 100; ii++)
+                {
+                    assertEquals("k\u00e4" + ii, index.get("k\u00e4" + ii, JsonNode.class)
+                                                       .get()
+                                                       .get("field1")
+                                                       .asText());
+                }
+                assertEquals(3, index.get("k\u00e43", JsonNode.class)
+                                     .get()
+                                     .get("id")
+                                     .asInt());
+                assertFalse(index.get("x", JsonNode.class)
+                                 .isPresent());
+                assertFalse(index.get("k100", JsonNode.class)
+                                 .isPresent());
+            }
+
+            assertEquals(101, JsonUtils.buildArrayHashIndex(arrayFile, indexFile, "id"));
+            try (JsonArrayHashIndex index = JsonUtils.openArrayHashIndex(arrayFile, indexFile))
+            {
+                assertEquals("k\u00e442", index.get("42", JsonNode.class)
+                                                 .get()
+                                                 .get("field1")
+                                                 .asText());
+                assertFalse(index.get("null", JsonNode.class)
+                                 .isPresent());
+            }
+
+            // numeric keys are found by their JSON text as it is, and of duplicate key fields the first one counts
+            Files.write(arrayFile, "[{\"id\":1.50},{\"id\":1e2},{\"id\":\"x\"},{\"id\":7,\"id\":8}]".getBytes(StandardCharsets.UTF_8));
+            assertEquals(4, JsonUtils.buildArrayHashIndex(arrayFile, indexFile, "id"));
+            try (JsonArrayHashIndex index = JsonUtils.openArrayHashIndex(arrayFile, indexFile))
+            {
+                assertEquals(1.5, index.get("1.50", JsonNode.class)
+                                       .get()
+                                       .get("id")
+                                       .asDouble(),
+                             0.0);
+                assertTrue(index.get("1e2", JsonNode.class)
+                                .isPresent());
+                assertTrue(index.get("x", JsonNode.class)
+                                .isPresent());
+                assertTrue(index.get("7", JsonNode.class)
+                                .isPresent());
+                assertFalse(index.get("8", JsonNode.class)
+                                 .isPresent());
+                assertFalse(index.get("1.5", JsonNode.class)
+                                 .isPresent());
+                assertFalse(index.get("100.0", JsonNode.class)
+                                 .isPresent());
+            }
+
+            // an index of a rewritten array file is rejected
+            Files.write(arrayFile, "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IllegalStateException.class, () -> JsonUtils.openArrayHashIndex(arrayFile, indexFile));
+        }
+        finally
+        {
+            Files.delete(arrayFile);
+            Files.delete(indexFile);
+        }
+    }
+
     /**
      * {@link JsonUtils#prepareAsReaderToObjectFunction(Class)} documents that it closes the
      * {@link java.io.Reader}, and documents a {@link JsonUtils.JSONDeserializationException} - both of which
@@ -293,6 +1407,88 @@ public class JsonUtilsTest
                                                          .apply(new Domain("value1")));
     }
 
+    @Test
+    public void testSerializeObjectIntoChainedDirectByteBuffers() throws Exception
+    {
+        Domain domain = new Domain("value1");
+        List<ByteBuffer> buffers = JsonUtils.serialize(domain, ByteBuffer.allocateDirect(8), () -> ByteBuffer.allocateDirect(8));
+
+        assertEquals(3, buffers.size());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(outputStream))
+        {
+            for (ByteBuffer buffer : buffers)
+            {
+                assertTrue(buffer.isDirect());
+                channel.write(buffer);
+            }
+        }
+        assertEquals("{\"field1\":\"value1\"}", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+        assertThrows(IllegalStateException.class, () -> JsonUtils.serialize(domain, ByteBuffer.allocate(8), null));
+    }
+
+    @Test
+    public void testSerializeObjectIntoWritableByteChannel() throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(outputStream);
+
+        JsonUtils.serialize(new Domain("value1"), channel);
+        JsonUtils.<Domain>serializer()
+                 .asByteArraySerializer()
+                 .writeTo(new Domain("value2"), channel);
+
+        assertTrue(channel.isOpen());
+        assertEquals("{\"field1\":\"value1\"}{\"field1\":\"value2\"}", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+        List<ByteBuffer> buffers = JsonUtils.<Domain>serializer()
+                                            .asByteArraySerializer()
+                                            .writeTo(new Domain("value3"), null, () -> ByteBuffer.allocate(64));
+        assertEquals(1, buffers.size());
+        assertEquals("{\"field1\":\"value3\"}", StandardCharsets.UTF_8.decode(buffers.get(0))
+                                                                    .toString());
+    }
+
+    @Test
+    public void testReformatPrettyCompactAndValidateOnly() throws Exception
+    {
+        String json = "{ \"a\" : [ 1, 0.10000000000000000001, true, null ],\n \"b\" : { \"c\" : \"d\" } }";
+
+        StringWriter compactWriter = new StringWriter();
+        JsonUtils.reformat(new StringReader(json), compactWriter, JsonUtils.ReformatMode.COMPACT);
+        assertEquals("{\"a\":[1,0.10000000000000000001,true,null],\"b\":{\"c\":\"d\"}}", compactWriter.toString());
+
+        ByteArrayOutputStream prettyOutputStream = new ByteArrayOutputStream();
+        JsonUtils.reformat(new ByteArrayInputStream(compactWriter.toString()
+                                                                 .getBytes(StandardCharsets.UTF_8)),
+                           prettyOutputStream, JsonUtils.ReformatMode.PRETTY);
+        assertEquals("{\n  \"a\" : [ 1, 0.10000000000000000001, true, null ],\n  \"b\" : {\n    \"c\" : \"d\"\n  }\n}",
+                     new String(prettyOutputStream.toByteArray(), StandardCharsets.UTF_8).replaceAll("[\\n\\r]+", "\n"));
+
+        JsonUtils.reformat(new StringReader(json), (Writer) null, JsonUtils.ReformatMode.VALIDATE_ONLY);
+    }
+
+    @Test
+    public void testReformatReportsLocationOfFirstError() throws Exception
+    {
+        JsonUtils.JSONFormatException exception = assertThrows(JsonUtils.JSONFormatException.class,
+                                                               () -> JsonUtils.reformat(new StringReader("{\n  \"a\": [1, 2,, 3]\n}"), (Writer) null,
+                                                                                        JsonUtils.ReformatMode.VALIDATE_ONLY));
+        assertEquals(2, exception.getLineNumber());
+        assertEquals(15, exception.getColumnNumber());
+
+        assertThrows(JsonUtils.JSONDeserializationException.class,
+                     () -> JsonUtils.reformat(new StringReader("[1, 2"), new StringWriter(), JsonUtils.ReformatMode.COMPACT));
+
+        // detected as UTF-32, of which the second character is invalid
+        byte[] invalidInput = { 0, 0, 0, '[', (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff };
+        exception = assertThrows(JsonUtils.JSONFormatException.class,
+                                 () -> JsonUtils.reformat(new ByteArrayInputStream(invalidInput), new ByteArrayOutputStream(),
+                                                          JsonUtils.ReformatMode.COMPACT));
+        assertEquals(1, exception.getLineNumber());
+    }
+
     @Test
     public void testSerializeArrayCompact() throws Exception
     {
@@ -356,6 +1552,43 @@ public class JsonUtilsTest
         assertEquals("[]", nullStreamWriter.toString());
     }
 
+    @Test
+    public void testReadAndSerializePrimitiveNumberArrays() throws Exception
+    {
+        assertTrue(Arrays.equals(new int[] { 1, -2, 3 }, JsonUtils.readIntArray(new StringReader("[1, -2, 3]"))
+                                                                  .toArray()));
+        assertTrue(Arrays.equals(new long[] { 1, 9007199254740993L }, JsonUtils.readLongArray(new StringReader("[1,9007199254740993]"))
+                                                                               .toArray()));
+        assertTrue(Arrays.equals(new double[] { 1.0, 2.5, -3e2 }, JsonUtils.readDoubleArray(new StringReader("[1,2.5,-3e2]"))
+                                                                           .toArray()));
+        assertEquals(0, JsonUtils.readIntArray(null)
+                                 .count());
+
+        StringWriter intWriter = new StringWriter();
+        JsonUtils.serializeIntArray(IntStream.of(1, -2, 3), intWriter);
+        assertEquals("[1,-2,3]", intWriter.toString());
+
+        StringWriter longWriter = new StringWriter();
+        JsonUtils.serializeLongArray(null, longWriter);
+        assertEquals("[]", longWriter.toString());
+
+        StringWriter doubleWriter = new StringWriter();
+        JsonUtils.serializeDoubleArray(JsonUtils.readDoubleArray(new StringReader("[1,2.5]")), doubleWriter);
+        assertEquals("[1.0,2.5]", doubleWriter.toString());
+    }
+
+    @Test
+    public void testReadIntArrayRejectsNonIntegralElements() throws Exception
+    {
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readIntArray(new StringReader("[1,null]"))
+                                                                 .sum());
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readIntArray(new StringReader("[1.5]"))
+                                                                 .sum());
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readIntArray(new StringReader("[4294967296]"))
+                                                                 .sum());
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readIntArray(new StringReader("{}")));
+    }
+
     @Test
     public void testPrepareAsPrettyPrintWriterConsumerProducesIndentedJson() throws Exception
     {
@@ -411,6 +1644,29 @@ public class JsonUtilsTest
         assertFalse(map.containsKey("abc"));
     }
 
+    @Test
+    public void testByteArrayDeserializerReadsSlicesAndByteBuffersInPlace() throws Exception
+    {
+        JsonUtils.JsonByteArrayDeserializer<Domain> deserializer = JsonUtils.<Domain>deserializer(Domain.class)
+                                                                            .asByteArrayDeserializer();
+        byte[] data = "##{\"field1\":\"value1\"}{\"field1\":\"value2\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new Domain("value1"), deserializer.apply(data, 2, 19));
+        assertEquals(new Domain("value2"), deserializer.apply(data, 21, 19));
+
+        ByteBuffer heapBuffer = ByteBuffer.wrap(data, 21, 19)
+                                          .slice();
+        assertEquals(new Domain("value2"), deserializer.apply(heapBuffer));
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(data.length);
+        directBuffer.put(data)
+                    .position(21);
+        assertEquals(new Domain("value2"), deserializer.apply(directBuffer));
+        assertEquals(21, directBuffer.position());
+
+        assertNull(deserializer.apply((ByteBuffer) null));
+    }
+
     /**
      * Currently zero coverage (plan-125 AC1.12). A clone is equal-but-not-same, and both
      * {@link JsonUtils.JsonCloner#usingKeyDeserializer} and {@link JsonUtils.JsonCloner#withKeySerializer} take
@@ -441,6 +1697,209 @@ public class JsonUtilsTest
                                   .containsKey("KEY:abc"));
     }
 
+    /**
+     * {@link JsonUtils.JsonCloner#applyAll(java.util.Collection)} has to keep the order of the given elements no
+     * matter how the work got split, which a threshold far below the collection size forces here.
+     */
+    @Test
+    public void testClonerApplyAllKeepsOrderAcrossForkedChunks() throws Exception
+    {
+        List<Domain> originals = IntStream.range(0, 1000)
+                                          .mapToObj(index -> new Domain("value" + index))
+                                          .collect(Collectors.toList());
+
+        List<Domain> clones = JsonUtils.cloner(Domain.class)
+                                       .withParallelismThreshold(7)
+                                       .applyAll(originals);
+
+        assertEquals(originals, clones);
+        for (int ii = 0; ii < originals.size(); ii++)
+        {
+            assertNotSame(originals.get(ii), clones.get(ii));
+        }
+    }
+
+    @Test
+    public void testClonerApplyAllWithNullAndEmptyInputAndNullElements() throws Exception
+    {
+        assertEquals(Arrays.asList(), JsonUtils.cloner(Domain.class)
+                                               .applyAll((List<Domain>) null));
+        assertEquals(Arrays.asList(new Domain("value1"), null), JsonUtils.cloner(Domain.class)
+                                                                        .applyAll(Arrays.asList(new Domain("value1"), null)));
+    }
+
+    @Test
+    public void testClonerApplyAllOnStreamKeepsEncounterOrder() throws Exception
+    {
+        List<Domain> originals = IntStream.range(0, 100)
+                                          .mapToObj(index -> new Domain("value" + index))
+                                          .collect(Collectors.toList());
+
+        assertEquals(originals, JsonUtils.cloner(Domain.class)
+                                         .applyAll(originals.stream())
+                                         .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testReadCompactTreeFromStringNavigatesAndConvertsBackToJsonNode() throws Exception
+    {
+        String json = "{\"meta\":{\"count\":2,\"big\":123456789012345678901234567890},"
+                + "\"items\":[{\"id\":1,\"name\":\"a\",\"ratio\":0.5,\"active\":true,\"parent\":null},"
+                + "{\"id\":3000000000,\"name\":\"a\",\"tags\":[]}]}";
+
+        JsonCompactTree tree = JsonUtils.readCompactTreeFromString(json);
+
+        assertEquals(new ObjectMapper().readTree(json), tree.toJsonNode());
+        assertEquals("a", tree.at("/items/0/name")
+                              .get()
+                              .asText());
+        assertEquals(3000000000L, tree.at("/items/1/id")
+                                      .get()
+                                      .asLong());
+        assertEquals(0.5, tree.at("/items/0/ratio")
+                              .get()
+                              .asDouble(),
+                     0.0);
+        assertTrue(tree.at("/items/0/active")
+                       .get()
+                       .asBoolean());
+        assertTrue(tree.at("/items/0/parent")
+                       .get()
+                       .isNull());
+        assertEquals(Arrays.asList("count", "big"), tree.at("/meta")
+                                                        .get()
+                                                        .fieldNames()
+                                                        .collect(Collectors.toList()));
+        assertEquals(2, tree.root()
+                            .get("items")
+                            .get()
+                            .size());
+        assertFalse(tree.at("/items/2")
+                        .isPresent());
+        assertFalse(tree.at("/unknown/field")
+                        .isPresent());
+    }
+
+    @Test
+    public void testCompactTreesShareTheGivenKeyDictionary() throws Exception
+    {
+        JsonKeyDictionary keyDictionary = new JsonKeyDictionary();
+
+        JsonCompactTree tree1 = JsonUtils.toCompactTree(new Domain("value1"), keyDictionary);
+        JsonCompactTree tree2 = JsonUtils.readCompactTreeFromString("{\"field1\":\"value2\"}", keyDictionary);
+
+        assertEquals(1, keyDictionary.size());
+        assertEquals("value1", tree1.at("/field1")
+                                    .get()
+                                    .asText());
+        assertEquals("value2", tree2.at("/field1")
+                                    .get()
+                                    .asText());
+        assertEquals(JsonUtils.toJsonNode(new Domain("value1")), tree1.toJsonNode());
+    }
+
+    @Test
+    public void testReadColumnarTableFromReaderAndSerializeBack() throws Exception
+    {
+        String json = "[{\"id\":1,\"name\":\"a\",\"score\":1,\"active\":true},"
+                + "{\"id\":2,\"name\":\"b\",\"score\":2.5,\"active\":null},"
+                + "{\"id\":3,\"name\":\"a\",\"extra\":\"x\"}]";
+        for (boolean offHeap : new boolean[] { false, true })
+        {
+            JsonColumnarTable table = JsonUtils.readColumnarTableFromReader(new StringReader(json), offHeap);
+
+            assertEquals(3, table.getRowCount());
+            assertEquals(Arrays.asList("id", "name", "score", "active", "extra"), table.getColumnNames());
+            assertEquals(JsonColumnarTable.ColumnType.LONG, table.getColumn("id")
+                                                                 .getType());
+            assertEquals(6, table.getColumn("id")
+                                 .getLong(0)
+                    + table.getColumn("id")
+                           .getLong(1)
+                    + table.getColumn("id")
+                           .getLong(2));
+
+            JsonColumnarTable.Column name = table.getColumn("name");
+            assertEquals(Arrays.asList("a", "b"), name.getDictionary());
+            assertEquals(0, name.getCode(2));
+            assertEquals("b", name.getString(1));
+
+            JsonColumnarTable.Column score = table.getColumn("score");
+            assertEquals(JsonColumnarTable.ColumnType.DOUBLE, score.getType());
+            assertEquals(1.0, score.getDouble(0), 0.0);
+            assertTrue(score.isNull(2));
+            assertTrue(table.getColumn("active")
+                            .isNull(1));
+            assertNull(table.getColumn("extra")
+                            .getString(0));
+
+            assertEquals("x", table.getRow(2)
+                                   .get("extra"));
+            assertEquals(Arrays.asList(1L, 2L, 3L), table.rows()
+                                                         .map(row -> row.get("id"))
+                                                         .collect(Collectors.toList()));
+            assertEquals("[{\"id\":1,\"name\":\"a\",\"score\":1.0,\"active\":true,\"extra\":null},"
+                    + "{\"id\":2,\"name\":\"b\",\"score\":2.5,\"active\":null,\"extra\":null},"
+                    + "{\"id\":3,\"name\":\"a\",\"score\":null,\"active\":null,\"extra\":\"x\"}]", JsonUtils.serialize(table));
+        }
+    }
+
+    @Test
+    public void testReadColumnarTableRejectsNestedAndMixedValues() throws Exception
+    {
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readColumnarTableFromReader(new StringReader("[{\"a\":{}}]")));
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readColumnarTableFromReader(new StringReader("[{\"a\":1},{\"a\":\"1\"}]")));
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readColumnarTableFromReader(new StringReader("{}")));
+        assertThrows(IllegalStateException.class, () -> JsonUtils.readColumnarTableFromReader(new StringReader("[{\"a\":1}")));
+    }
+
+    @Test
+    public void testReadTapeDocumentFromStringDecodesValuesByPointer() throws Exception
+    {
+        String json = "\uFEFF { \"meta\" : {\"count\":2}, \"items\":[ {\"field1\":\"value1\"}, {\"field1\":\"va\\\"lue2\"} ],"
+                + " \"esc\\u0061ped\":true, \"empty\":{}, \"list\":[] }";
+
+        JsonTapeDocument document = JsonUtils.readTapeDocumentFromString(json);
+
+        assertEquals(new Domain("value1"), document.get("/items/0", Domain.class)
+                                                   .get());
+        assertEquals("va\"lue2", document.getText("/items/1/field1")
+                                         .get());
+        assertEquals("{\"count\":2}", document.getRaw("/meta")
+                                              .get());
+        assertEquals(Integer.valueOf(2), document.get("/meta/count", Integer.class)
+                                                 .get());
+        assertEquals(Boolean.TRUE, document.get("/escaped", Boolean.class)
+                                           .get());
+        assertEquals(Arrays.asList("meta", "items", "escaped", "empty", "list"), document.getFieldNames("")
+                                                                                         .get());
+        assertEquals(Integer.valueOf(2), document.size("/items")
+                                                 .get());
+        assertEquals(Integer.valueOf(0), document.size("/empty")
+                                                 .get());
+        assertEquals(Integer.valueOf(0), document.size("/list")
+                                                 .get());
+        assertFalse(document.has("/items/2"));
+        assertFalse(document.has("/meta/count/0"));
+        assertFalse(document.get("/unknown", String.class)
+                            .isPresent());
+    }
+
+    @Test
+    public void testReadTapeDocumentRejectsInvalidStructure() throws Exception
+    {
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.readTapeDocumentFromString("{\"a\":1"));
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.readTapeDocumentFromString("[1,2}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.readTapeDocumentFromString("[1 2]"));
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.readTapeDocumentFromString("{\"a\" 1}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.readTapeDocumentFromString("[\"open]"));
+        assertThrows(IllegalArgumentException.class, () -> JsonUtils.readTapeDocumentFromString("{} {}"));
+        assertNull(JsonUtils.readTapeDocumentFromString(""));
+        assertEquals(Long.valueOf(42), JsonUtils.readTapeDocumentFromString(" 42 ")
+                                                .get("", Long.class)
+                                                .get());
+    }
+
     /**
      * Currently zero coverage (plan-125 AC1.13). {@link JsonUtils.JsonStringConverter#serializer()} hands out
      * the same instance on every call, and a reconfiguration through one retrieval is visible through another -
@@ -778,6 +2237,107 @@ public class JsonUtilsTest
         }
     }
 
+    protected static enum PlainMode
+    {
+        FIRST, SECOND
+    }
+
+    /**
+     * Bean without any Jackson annotation, which makes it eligible for the direct binding of
+     * {@link JsonUtils#toMap(Object)} and {@link JsonUtils#toObjectWithType(Object, Class)}
+     */
+    protected static class PlainBean
+    {
+        private String       text;
+        private int          intValue = 5;
+        private long         longValue;
+        private double       doubleValue;
+        private boolean      flag;
+        private PlainMode    mode;
+        private List<String> tags;
+        private PlainBean    child;
+
+        public String getText()
+        {
+            return this.text;
+        }
+
+        public void setText(String text)
+        {
+            this.text = text;
+        }
+
+        public int getIntValue()
+        {
+            return this.intValue;
+        }
+
+        public void setIntValue(int intValue)
+        {
+            this.intValue = intValue;
+        }
+
+        public long getLongValue()
+        {
+            return this.longValue;
+        }
+
+        public void setLongValue(long longValue)
+        {
+            this.longValue = longValue;
+        }
+
+        public double getDoubleValue()
+        {
+            return this.doubleValue;
+        }
+
+        public void setDoubleValue(double doubleValue)
+        {
+            this.doubleValue = doubleValue;
+        }
+
+        public boolean isFlag()
+        {
+            return this.flag;
+        }
+
+        public void setFlag(boolean flag)
+        {
+            this.flag = flag;
+        }
+
+        public PlainMode getMode()
+        {
+            return this.mode;
+        }
+
+        public void setMode(PlainMode mode)
+        {
+            this.mode = mode;
+        }
+
+        public List<String> getTags()
+        {
+            return this.tags;
+        }
+
+        public void setTags(List<String> tags)
+        {
+            this.tags = tags;
+        }
+
+        public PlainBean getChild()
+        {
+            return this.child;
+        }
+
+        public void setChild(PlainBean child)
+        {
+            this.child = child;
+        }
+    }
+
     protected static class MapHolder
     {
         private Map<String, String> map;
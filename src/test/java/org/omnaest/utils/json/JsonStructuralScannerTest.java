@@ -0,0 +1,68 @@
+package org.omnaest.utils.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class JsonStructuralScannerTest
+{
+    private static final int[] CLASS_COMBINATIONS = { JsonStructuralScanner.CLASS_QUOTE, JsonStructuralScanner.CLASS_BACKSLASH,
+            JsonStructuralScanner.CLASS_BRACE, JsonStructuralScanner.CLASS_BRACKET, JsonStructuralScanner.CLASS_COMMA, JsonStructuralScanner.CLASS_COLON,
+            JsonStructuralScanner.CLASS_WHITESPACE, JsonStructuralScanner.CLASS_QUOTE | JsonStructuralScanner.CLASS_BACKSLASH,
+            JsonStructuralScanner.CLASS_QUOTE | JsonStructuralScanner.CLASS_WHITESPACE, JsonStructuralScanner.CLASSES_LITERAL_DELIMITER };
+
+    /**
+     * The SWAR scanner has to find exactly the byte the scalar reference finds, for every start index and character
+     * class combination - including sparse inputs where a match sits behind several words, and all byte values,
+     * since non ASCII bytes and bytes right below and above the whitespace bound are where the arithmetic could slip.
+     */
+    @Test
+    public void testSwarAndScalarScannerAreEquivalentOnRandomInput() throws Exception
+    {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++)
+        {
+            byte[] data = new byte[random.nextInt(100)];
+            boolean sparse = round % 2 == 0;
+            for (int ii = 0; ii < data.length; ii++)
+            {
+                data[ii] = sparse && random.nextInt(20) != 0 ? (byte) ('a' + random.nextInt(26)) : (byte) random.nextInt(256);
+            }
+
+            for (int characterClasses : CLASS_COMBINATIONS)
+            {
+                for (int fromIndex = 0; fromIndex <= data.length; fromIndex++)
+                {
+                    int toIndex = fromIndex + random.nextInt(data.length - fromIndex + 1);
+                    assertEquals(JsonStructuralScanner.scalar()
+                                                      .indexOf(data, fromIndex, toIndex, characterClasses),
+                                 JsonStructuralScanner.swar()
+                                                      .indexOf(data, fromIndex, toIndex, characterClasses));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndexOfStringEndHonorsEscapesForBothScanners() throws Exception
+    {
+        byte[] data = "x\"a\\\"b\\\\\" c \"unterminated\\\"".getBytes(StandardCharsets.UTF_8);
+        for (JsonStructuralScanner scanner : new JsonStructuralScanner[] { JsonStructuralScanner.scalar(), JsonStructuralScanner.swar() })
+        {
+            assertEquals(9, scanner.indexOfStringEnd(data, 1, data.length));
+            assertEquals(-1, scanner.indexOfStringEnd(data, 12, data.length));
+        }
+    }
+
+    @Test
+    public void testClassify() throws Exception
+    {
+        assertEquals(JsonStructuralScanner.CLASS_QUOTE, JsonStructuralScanner.classify((byte) '"'));
+        assertEquals(JsonStructuralScanner.CLASS_WHITESPACE, JsonStructuralScanner.classify((byte) '\t'));
+        assertEquals(0, JsonStructuralScanner.classify((byte) 'a'));
+        assertEquals(0, JsonStructuralScanner.classify((byte) 0xC3));
+    }
+}